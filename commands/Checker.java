@@ -1,8 +1,9 @@
 package commands;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 
 import sys_files.Builder;
+import sys_files.File;
 import sys_files.FileSystem;
 import exceptions.InvalidCommandException;
 import exceptions.InvalidRedirectorException;
@@ -38,30 +39,82 @@ public class Checker {
   public static Command getCommand(String command, boolean forMAN)
       throws InvalidCommandException, InvalidRedirectorException {
 
-    // Separating command into a command name and arguments. The regex below
-    // splits command on every white space except on those in quotes (for echo).
-    String[] inParts = command.split(" (?=([^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-    String commandName = inParts[0];
-    String[] arguments = Arrays.copyOfRange(inParts, 1, inParts.length);
+    // Separating command into a command name and arguments, in a single pass
+    // that splits on white space except on that in quotes (for echo).
+    CommandLine line = CommandLine.lex(command);
+
+    // Checking if user connected commands with pipes.
+    if (!forMAN && line.getPipe() >= 0) {
+      return Checker.getPipeline(line);
+    }
+    return Checker.getCommand(line, forMAN, null);
+  }
+
+  /**
+   * Returns a Pipeline made of the commands between the pipe symbols in line,
+   * each connected to the next one.
+   */
+  private static Command getPipeline(CommandLine line)
+      throws InvalidCommandException, InvalidRedirectorException {
+    ArrayList<Command> stages = new ArrayList<Command>();
+    ArrayList<Pipe> pipes = new ArrayList<Pipe>();
+    Pipe input = null; // Pipe the next command reads from.
+
+    int start = 0;
+    for (int i = 0; i <= line.size(); i++) {
+      if (i == line.size() || line.getKind(i) == CommandLine.PIPE) {
+        // Checking that there is a command on both sides of every pipe.
+        if (i == start) {
+          throw new InvalidCommandException(
+              "|: A command is missing before or after a pipe.");
+        }
+        Command stage = Checker.getCommand(line.slice(start, i), false, input);
+        stages.add(stage);
+
+        // Sending the output of every command but the last one to the next
+        // command, unless it is redirected to a file.
+        if (i < line.size()) {
+          input = new Pipe();
+          pipes.add(input);
+          if (stage.getRedirector() == null) {
+            stage.setOutput(input);
+          }
+        }
+        start = i + 1;
+      }
+    }
+    return new Pipeline(stages.toArray(new Command[stages.size()]),
+        pipes.toArray(new Pipe[pipes.size()]));
+  }
+
+  /**
+   * Returns a Command object for line, reading its input from input (which may
+   * be null).
+   */
+  private static Command getCommand(CommandLine line, boolean forMAN,
+      Pipe input) throws InvalidCommandException, InvalidRedirectorException {
+    String commandName = (line.size() > 0) ? line.getText(0) : "";
+    String[] arguments = line.getTexts(1, line.size());
 
     // Attempting to retrieve the specified Command object. If the command cant
     // be found or its arguments are invalid, throws an InvalidCommandException.
     Command commandObject = Checker.getCommandInstance(commandName);
+    commandObject.setInput(input);
 
     // Checking if the command is being validated solely for CommandMAN.
     if (!forMAN) {
       // Checking if user tried to redirect command output.
-      if (Redirector.isRedirectable(arguments)
+      if (line.getRedirection() >= 0
           && !"exit".equals(commandObject.getCommandName())) {
         // Building arguments for redirector.
-        String[] redirectorArgs = Builder.buildRedirectionArguments(arguments);
+        String[] redirectorArgs = Builder.buildRedirectionArguments(line);
         // Validation results for the redirector arguments.
         ValidationResults res = Redirector.validForRedirection(redirectorArgs);
 
         // Creating a redirector if arguments were valid.
         if (res.isValid()) {
           // Building redirection-free arguments.
-          arguments = Builder.buildPreRedirectionArguments(arguments);
+          arguments = Builder.buildPreRedirectionArguments(line);
           commandObject.createRedirector(redirectorArgs);
         } else {
           throw new InvalidRedirectorException(res.getMessage());
@@ -86,26 +139,15 @@ public class Checker {
   private static Command getCommandInstance(String commandName)
       throws InvalidCommandException {
 
-    // Attempts to retrieve a Command specific object. Throws an
-    // InvalidCommandException if the user entered a command that doesnt exist.
-    try {
-      // Checking if user entered the !number command.
-      if ("!".equals(commandName)) {
-        commandName = "exclaim";
-      }
-      // Checking if there is a class "Command..." (where ... is the user
-      // entered command) in the commands package.
-      Class<?> someCommandClass =
-          Class.forName("commands.Command" + commandName.toUpperCase());
-
-      // Creating an instance of the Command object using the constructor.
-      Object commandObject = someCommandClass.newInstance();
-
-      return (Command) commandObject;
-    } catch (Exception ex) {
+    // Looking the command up in the registry, which also knows the !number
+    // command. Throws an InvalidCommandException if the user entered a command
+    // that doesnt exist.
+    Command commandObject = CommandRegistry.getInstance().create(commandName);
+    if (commandObject == null) {
       throw new InvalidCommandException("Command \"" + commandName
           + "\" does not exist.");
     }
+    return commandObject;
   }
 
   /**
@@ -123,6 +165,22 @@ public class Checker {
     }
   }
 
+  /**
+   * Checks if the file at path can be changed, which files inside a mounted
+   * directory cannot. Returns a validation results for that path.
+   * 
+   * @param path some path to be validated.
+   * @return ValidationResult object.
+   */
+  public static ValidationResults validateWritable(String path) {
+    File file = disc.fileAt(path);
+    if (file != null && file.isReadOnly()) {
+      return new ValidationResults(false, path + ": Read-only file system.");
+    } else {
+      return new ValidationResults(true, null);
+    }
+  }
+
   /**
    * Checks if each path in paths is valid (ie. it exists). Returns an array of
    * validation results for all paths in paths.
@@ -13,6 +13,8 @@ public abstract class Command {
   private String[] arguments; // Array of command's arguments.
   private boolean recursive = false; // If command contains a recursive flag.
   private Redirector redirector = null; // Redirector for command output.
+  private Output output = null; // Where command output goes.
+  private Pipe input = null; // Pipe that command input comes from, if any.
 
   /**
    * Initializes new Command with no arguments.
@@ -105,7 +107,7 @@ public abstract class Command {
    */
   public void createRedirector(String[] arguments)
       throws InvalidRedirectorException {
-    this.redirector = Builder.buildRedirector("", arguments);
+    this.redirector = Builder.buildRedirector(arguments);
   }
 
   /**
@@ -119,6 +121,48 @@ public abstract class Command {
     return this.redirector;
   }
 
+  /**
+   * Returns where this command's output goes: the output set for it, otherwise
+   * its redirector if it has one, otherwise standard output.
+   * 
+   * @return Output object that this Command object writes its output to.
+   */
+  public Output getOutput() {
+    if (this.output == null) {
+      this.output =
+          (this.redirector != null) ? this.redirector : new StandardOutput();
+    }
+    return this.output;
+  }
+
+  /**
+   * Sets where this command's output goes to newOutput.
+   * 
+   * @param newOutput Output object for this Command object to write to.
+   */
+  public void setOutput(Output newOutput) {
+    this.output = newOutput;
+  }
+
+  /**
+   * Returns the pipe this command reads its input from, or null if it has no
+   * input.
+   * 
+   * @return Pipe object that this Command object reads from, or null.
+   */
+  public Pipe getInput() {
+    return this.input;
+  }
+
+  /**
+   * Sets the pipe this command reads its input from to newInput.
+   * 
+   * @param newInput Pipe object for this Command object to read from.
+   */
+  public void setInput(Pipe newInput) {
+    this.input = newInput;
+  }
+
   /**
    * Returns whether or not this command contains a recursive flag (-R or -r).
    * 
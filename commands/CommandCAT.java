@@ -1,7 +1,7 @@
 package commands;
 
-import sys_files.File;
 import sys_files.FileSystem;
+import sys_files.Snapshot;
 import sys_files.TextFile;
 
 /**
@@ -78,28 +78,24 @@ public class CommandCAT extends Command {
    */
   @Override
   public void execute() {
-    String contents = this.executeReturn(); // File contents.
-
-    // Checking if output is to be redirected.
-    if (this.getRedirector() != null) {
-      Redirector r = this.getRedirector();
-      r.setToWrite(contents); // Adding output to Redirector.
-      r.redirect(); // Redirecting to file.
-    } else {
-      // Printing out contents.
-      if (!contents.isEmpty()) {
-        System.out.println(contents);
-      }
-    }
+    // Writing out contents, to a file if output is to be redirected.
+    Output output = this.getOutput();
+    this.writeOutput(output);
+    output.close();
   }
 
   /**
-   * Returns command output.
+   * Writes command output to output.
    * 
-   * @return contents of the specified file.
+   * @param output where the contents of the specified file are written.
    */
-  public String executeReturn() {
-    File toShow = disc.fileAt(this.getArguments()[0]);
-    return toShow.fileContents();
+  public void writeOutput(Output output) {
+    // Only the contents there are now get written, even if output goes back
+    // into the same file or the file is changed by someone else meanwhile.
+    try (Snapshot snapshot = disc.openSnapshot()) {
+      TextFile toShow = (TextFile) disc.fileAt(this.getArguments()[0]);
+      CharSequence contents = snapshot.getText(toShow);
+      output.append(contents, 0, contents.length());
+    }
   }
 }
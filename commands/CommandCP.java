@@ -1,8 +1,8 @@
 package commands;
 
 import sys_files.*;
-import exceptions.InvalidFileNameException;
 import exceptions.InvalidPathException;
+import exceptions.ReadOnlyFileException;
 
 /**
  * Representation of a command that copies or renames files/directories to 
@@ -63,6 +63,11 @@ public class CommandCP extends Command {
 
       // Checking if file is only to be renamed.
       if (disc.contains(OLDPATH)) {
+        // Checking if files can be added where NEWPATH leads.
+        if (this.readOnlyDestination(NEWPATH)) {
+          return new ValidationResults(false, NEWPATH
+              + ": Read-only file system.");
+        }
         if (disc.contains(NEWPATH)) {
           File toMove = disc.fileAt(OLDPATH); // File to move.
           File destination = disc.fileAt(NEWPATH); // Destination for that file.
@@ -108,6 +113,17 @@ public class CommandCP extends Command {
     return new ValidationResults(false, path + ": No such file or directory.");
   }
 
+  /**
+   * Returns whether or not the directory that path leads into is read-only.
+   */
+  private boolean readOnlyDestination(String path) {
+    File destination = disc.fileAt(path);
+    if (!(destination instanceof Directory)) {
+      destination = disc.fileAt(disc.retrieveParentPath(path));
+    }
+    return destination != null && destination.isReadOnly();
+  }
+
   /**
    * Returns whether or not file is just being renamed.
    */
@@ -120,48 +136,27 @@ public class CommandCP extends Command {
    * Returns the file to be copied(if copy is true) or moved(if copy is false).
    */
   private File toCopyMove(boolean copy) {
+    File file = disc.fileAt(this.getArguments()[0]);
     if (copy) {
-      try {
-        return this.deepCopy(disc.fileAt(this.getArguments()[0]));
-      } catch (Exception ex) {
-        System.out.println(ex.getMessage());
-        ex.printStackTrace();
-      }
+      // Copies share everything with the original until either one changes.
+      return file.copy();
     }
-    return disc.fileAt(this.getArguments()[0]);
+    return file;
   }
 
   /**
-   * Returns a deep copy of file.
+   * Renames file.
    */
-  private File deepCopy(File file) throws InvalidFileNameException,
-      InvalidPathException {
-    if (file instanceof TextFile) { // Deep copy for text file.
-      TextFile textFile = new TextFile(file.getName());
-      textFile.setContents(file.fileContents());
-      return textFile;
-    } else { // Deep copy for directory.
-      // Checking if directory is null or doesn't have any contents.
-      if (file == null || ((Directory) file).isEmpty()) {
-        return new Directory(file.getName());
-      } else {
-        // Recursively copying all the contents.
-        Directory copy = new Directory(file.getName());
-        for (File f : ((Directory) file).getContents()) {
-          copy.addFile(deepCopy(f));
-        }
-        return copy;
-      }
-    }
+  private void renameFile(File file) {
+    file.renameTo(this.newName());
   }
 
   /**
-   * Renames file.
+   * Returns the name NEWPATH gives to the file.
    */
-  private void renameFile(File file) {
+  private String newName() {
     String[] inParts = Builder.pathToArray(this.getArguments()[1]);
-    String newName = inParts[inParts.length - 1];
-    file.renameTo(newName);
+    return inParts[inParts.length - 1];
   }
 
   /**
@@ -169,11 +164,17 @@ public class CommandCP extends Command {
    * the process.
    */
   private void moveFile(File toMove, String destination) {
+    this.moveFile(toMove, destination, toMove.getName());
+  }
+
+  /**
+   * Adds toMove to destination under newName, deleting toMove from its
+   * original location in the process.
+   */
+  private void moveFile(File toMove, String destination, String newName) {
     try {
-      Directory originalParent = (Directory) toMove.getParentFile();
-      originalParent.deleteFile(toMove);
-      disc.addFile(toMove, destination);
-    } catch (InvalidPathException ex) {
+      disc.moveFile(toMove, destination, newName);
+    } catch (InvalidPathException | ReadOnlyFileException ex) {
       System.out.println(ex.getMessage());
     }
   }
@@ -187,6 +188,8 @@ public class CommandCP extends Command {
     } catch (InvalidPathException ex) {
       System.out.println(ex.getMessage());
       ex.printStackTrace();
+    } catch (ReadOnlyFileException ex) {
+      System.out.println(ex.getMessage());
     }
   }
 
@@ -203,20 +206,20 @@ public class CommandCP extends Command {
 
     if (this.rename) {
       // Renaming file and copying/moving it to destination.
-      this.renameFile(file);
       String path = disc.retrieveParentPath(this.getArguments()[1]);
       if (copy) {
+        this.renameFile(file);
         this.copyFile(file, path);
       } else {
-        this.moveFile(file, path);
+        this.moveFile(file, path, this.newName());
       }
     } else if (file instanceof TextFile && destination instanceof TextFile) {
       // Renaming file and copying/moving it to destination.
-      this.renameFile(file);
       if (copy) {
+        this.renameFile(file);
         this.copyFile(file, destination.getParentPath());
       } else {
-        this.moveFile(file, destination.getParentPath());
+        this.moveFile(file, destination.getParentPath(), this.newName());
       }
     } else {
       // Moving/copying file to destination.
@@ -65,15 +65,15 @@ public class CommandECHO extends Command {
    */
   @Override
   public void execute() {
-    // Checking if output is to be redirected.
-    if (this.getRedirector() != null) {
-      Redirector r = this.getRedirector();
-      r.setToWrite(this.executeReturn()); // Adding output to Redirector.
-      r.redirect(); // Redirecting to file.
+    // Writing out string, to a file or pipe if output is to be redirected.
+    Output output = this.getOutput();
+    String toShow = this.executeReturn();
+    if (toShow.isEmpty() && output instanceof StandardOutput) {
+      System.out.println(); // An empty string is still shown as a blank line.
     } else {
-      // Printing out string.
-      System.out.println(this.executeReturn());
+      output.append(toShow);
     }
+    output.close();
   }
 
   /**
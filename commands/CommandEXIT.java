@@ -1,5 +1,7 @@
 package commands;
 
+import sys_files.Session;
+
 /**
  * Representation of a command that quits the program.
  */
@@ -57,7 +59,13 @@ public class CommandEXIT extends Command {
    */
   @Override
   public void execute() {
-    System.exit(0);
+    // Only the user at the terminal exits the whole shell; anyone else just
+    // ends their own session.
+    Session session = Session.current();
+    if (session.isConsole()) {
+      System.exit(0);
+    }
+    session.end();
   }
 
 }
@@ -1,7 +1,6 @@
 package commands;
 
 import java.util.Arrays;
-import java.util.Scanner;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -16,7 +15,8 @@ public class CommandGREP extends Command {
 
   private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
   private String errors = ""; // Contains stdErrors.
-  private String pattern; // Regex pattern.
+  private Pattern pattern; // Regex pattern.
+  private Snapshot snapshot; // File system as of when searching started.
 
   /**
    * Initializes new CommandGREP with no arguments.
@@ -49,7 +49,9 @@ public class CommandGREP extends Command {
   public String commandDocumentation() {
     return ("Displays lines from files that match the pattern. If -R is\n"
         + "supplied, recursively traverses the directory tree and displays\n"
-        + "all lines in all files that match the pattern.");
+        + "all lines in all files that match the pattern. If no files are\n"
+        + "given after a pipe (|), displays the lines of the piped output\n"
+        + "that match the pattern.");
   }
 
   /**
@@ -59,11 +61,12 @@ public class CommandGREP extends Command {
    * regular expression (pattern) to be matched, and PATH is some file whose
    * contents are compared with REGEX. If -R is supplied, PATH can also be a
    * directory, whose contents will be recursively traversed in search of files
-   * to compare with REGEX.
+   * to compare with REGEX. If grep reads from a pipe, PATH can be left out, in
+   * which case the lines read from the pipe are compared with REGEX.
    */
   @Override
   public ValidationResults validArguments(String[] arguments) {
-    final int MIN_NUM_OF_ARGUMENTS = 2;
+    final int MIN_NUM_OF_ARGUMENTS = (this.getInput() != null) ? 1 : 2;
 
     // Checking if the number of arguments is correct.
     if (arguments.length >= MIN_NUM_OF_ARGUMENTS) {
@@ -97,19 +100,11 @@ public class CommandGREP extends Command {
    */
   @Override
   public void execute() {
-    String info = this.executeReturn(); // Matched lines.
+    // Writing out matched lines, to a file if output is to be redirected.
+    Output output = this.getOutput().trimmed();
+    this.writeOutput(output);
+    output.close();
 
-    // Checking if output is to be redirected.
-    if (this.getRedirector() != null) {
-      Redirector r = this.getRedirector();
-      r.setToWrite(info); // Adding output to Redirector.
-      r.redirect(); // Redirecting to file.
-    } else {
-      // Printing out matches.
-      if (!info.isEmpty()) {
-        System.out.println(info);
-      }
-    }
     // Printing out any stdErrors.
     if (!this.errors.isEmpty()) {
       System.out.println(this.getErrors());
@@ -117,11 +112,11 @@ public class CommandGREP extends Command {
   }
 
   /**
-   * Returns command output.
+   * Writes command output to output.
    * 
-   * @return the lines that match the specific pattern.
+   * @param output where the lines that match the specific pattern are written.
    */
-  public String executeReturn() {
+  public void writeOutput(Output output) {
     // Making arguments easier to work with by excluding the regex.
     String[] arguments =
         Arrays.copyOfRange(this.getArguments(), 1, this.getArguments().length);
@@ -132,31 +127,51 @@ public class CommandGREP extends Command {
     // Setting the pattern.
     this.setPattern();
 
+    // Checking if lines are to be read from a pipe instead of files.
+    if (arguments.length == 0 && this.getInput() != null) {
+      this.writeMatchedLines(this.getInput(), output);
+      return;
+    }
+
+    // Every file is searched as it was when searching started, even if it is
+    // changed meanwhile.
+    try (Snapshot snapshot = disc.openSnapshot()) {
+      this.snapshot = snapshot;
+      this.searchPaths(arguments, pathResults, output);
+    } finally {
+      this.snapshot = null;
+    }
+  }
+
+  /**
+   * Writes the lines that matched the specified pattern in the files at each
+   * of paths, given the validation results for each path.
+   */
+  private void searchPaths(String[] paths, ValidationResults[] pathResults,
+      Output output) {
     // Iterating though every path.
-    String regexMatches = "";
-    for (int i = 0; i < arguments.length; i++) {
+    for (int i = 0; i < paths.length; i++) {
       // Checking if path was valid.
       if (pathResults[i].isValid()) {
-        File file = disc.fileAt(arguments[i]); // File to compare with regex.
+        File file = disc.fileAt(paths[i]); // File to compare with regex.
 
         // Checking if command was recursive.
         if (this.isRecursive()) {
           // NOTE: depth > 99 might result in a stack overflow.
-          regexMatches += this.traverse(file, 99);
+          this.traverse(file, file.getPath(), 99, output);
         } else {
           // Depth of 0, no need to recurse.
-          regexMatches += (this.traverse(file, 0));
+          this.traverse(file, file.getPath(), 0, output);
         }
       } else {
         // If path is invalid.
         this.errors += ("grep: " + pathResults[i].getMessage() + "\n");
       }
     }
-    return regexMatches.trim();
   }
 
   /**
-   * Returns any stdErrors collected when running executeReturn().
+   * Returns any stdErrors collected when running writeOutput().
    * 
    * @return any stdErrors.
    */
@@ -165,66 +180,71 @@ public class CommandGREP extends Command {
   }
 
   /**
-   * Sets the regex pattern.
+   * Sets the regex pattern. It is compiled once, rather than for every file.
    */
   private void setPattern() {
-    this.pattern = this.getArguments()[0].replaceAll("\"", "");
+    this.pattern = Pattern.compile(this.getArguments()[0].replaceAll("\"", ""));
   }
 
   /**
-   * Recursively traverses file as long as depth is > 0. Returns the lines that
-   * matched the specified pattern.
+   * Recursively traverses file, found at path, as long as depth is > 0.
+   * Writes the lines that matched the specified pattern.
    */
-  private String traverse(File file, int depth) {
+  private void traverse(File file, String path, int depth, Output output) {
     // Checking if file is a text file.
     if (file instanceof TextFile) {
-      // Matched lines.
-      String matched = this.getMatchedLines((TextFile) file);
-
-      // Checking if matched is empty; going to next line if its not.
-      if (!matched.isEmpty()) {
-        return matched += "\n";
-      } else {
-        return "";
-      }
+      this.writeMatchedLines((TextFile) file, path, output);
     } else {
       // File is a directory, checking if depth allows for further traversing.
-      String regexMatches = "";
       if (depth > 0) {
-        for (File f : ((Directory) file).getContents()) {
+        Directory dir = (Directory) file;
+        File[] contents = this.snapshot.getContents(dir);
+        String[] names = this.snapshot.getContentArray(dir);
+        for (int i = 0; i < contents.length; i++) {
           depth--; // Decreasing depth with each traverse.
-          regexMatches += (this.traverse(f, depth));
+          String childPath =
+              "/".equals(path) ? path + names[i] : path + "/" + names[i];
+          this.traverse(contents[i], childPath, depth, output);
         }
       }
-      return regexMatches; // Removing any blank lines.
     }
   }
 
   /**
-   * Returns the lines that matched the specified pattern.
+   * Writes the lines read from input that matched the specified pattern, each
+   * on a line of its own.
    */
-  private String getMatchedLines(TextFile file) {
-    // Setting up pattern and matcher to perform matching.
-    Pattern p = Pattern.compile(this.pattern);
-    Matcher m = p.matcher(""); // Match currently set to empty string.
+  private void writeMatchedLines(Pipe input, Output output) {
+    Matcher m = this.pattern.matcher(""); // Currently set to empty string.
 
-    // Contents of file to be used by matcher.
-    String contents = file.fileContents();
-    String matched = "";
-
-    // Scanner to iterate through each line in the file contents.
-    Scanner reader = new Scanner(contents);
+    // Reading lines until the command writing to the pipe is done.
+    CharSequence line;
+    while ((line = input.readLine()) != null) {
+      m.reset(line); // Matcher reset to the specific line.
+      if (m.find()) { // If the line matches the pattern, write that line.
+        output.append(line).append("\n");
+      }
+    }
+  }
 
-    // Iterating through the file contents line by line.
-    while (reader.hasNext()) {
-      String line = reader.nextLine();
+  /**
+   * Writes the lines of file, found at path, that matched the specified
+   * pattern, each on a line of its own.
+   */
+  private void writeMatchedLines(TextFile file, String path, Output output) {
+    // Setting up a matcher to perform matching.
+    Matcher m = this.pattern.matcher(""); // Currently set to empty string.
+
+    // Iterating through the file contents line by line, without copying them.
+    Lines lines = this.snapshot.getLines(file);
+    int numLines = lines.numLines();
+    for (int i = 0; i < numLines; i++) {
+      CharSequence line = lines.getLine(i);
       m.reset(line); // Matcher reset to the specific line.
-      if (m.find()) { // If the line matches the pattern, save that line.
-        matched += (file.getPath() + ": " + line + "\n");
+      if (m.find()) { // If the line matches the pattern, write that line.
+        output.append(path).append(": ").append(line).append("\n");
       }
     }
-    reader.close(); // Closing the scanner.
-    return matched.trim(); // Removing any blank lines.
   }
 
 }
@@ -0,0 +1,84 @@
+package commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import sys_files.FileSystem;
+
+/**
+ * Representation of a command that replaces the whole file system with one
+ * loaded from an image file on the host.
+ */
+public class CommandLOAD extends Command {
+
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
+  /**
+   * Initializes new CommandLOAD with no arguments.
+   */
+  public CommandLOAD() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandLOAD with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandLOAD(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "load";
+  }
+
+  /**
+   * Returns the documentation for this CommandLOAD object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Replaces the whole file system with one saved to an image file\n"
+        + "on the host. Files are only read from the image once they are\n"
+        + "used.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandLOAD object.
+   * 
+   * Arguments must be in form: load FILE, where FILE is the path of an image
+   * file on the host.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 1;
+    if (arguments.length == MANDATORY_NUM_OF_ARGUMENTS) {
+      // Checking if the image file exists on the host.
+      if (!Files.isRegularFile(Paths.get(arguments[0]))) {
+        return new ValidationResults(false, arguments[0]
+            + ": No such image file.");
+      }
+      return new ValidationResults(true, null);
+    }
+    return new ValidationResults(false, "Requires "
+        + MANDATORY_NUM_OF_ARGUMENTS + " argument.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    try {
+      disc.loadImage(this.getArguments()[0]);
+    } catch (IOException ex) {
+      System.out.println("load: " + ex.getMessage());
+    }
+  }
+
+}
@@ -9,6 +9,7 @@ public class CommandLS extends Command {
 
   private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
   private String errors = ""; // Contains stdErrors.
+  private Snapshot snapshot; // File system as of when listing started.
 
   /**
    * Initializes new CommandLS with no arguments.
@@ -68,23 +69,16 @@ public class CommandLS extends Command {
    */
   @Override
   public void execute() {
-    // Contents of all files.
-    String contents = this.executeReturn();
-
-    // Checking if output is to be redirected.
-    if (this.getRedirector() != null) {
-      Redirector r = this.getRedirector();
-      r.setToWrite(contents); // Adding output to Redirector.
-      r.redirect(); // Redirecting to file.
-    } else {
-      // Printing out contents.
-      if (!(contents.isEmpty())) {
-        System.out.println(contents);
-      }
-    }
+    // Writing out contents of all files, to a file if output is to be
+    // redirected.
+    Output output = this.getOutput().trimmed();
+    this.writeOutput(output);
+    output.close();
+
     // Printing out any stdErrors.
     if (!this.errors.isEmpty()) {
-      if (!contents.isEmpty()) { // Adding a blank line when needed.
+      // Adding a blank line when needed.
+      if (!output.isEmpty()) {
         System.out.println();
       }
       System.out.println(this.getErrors());
@@ -92,42 +86,49 @@ public class CommandLS extends Command {
   }
 
   /**
-   * Returns command output.
+   * Writes command output to output.
    * 
-   * @return contents of the specified file.
+   * @param output where the contents of the specified files are written.
    */
-  public String executeReturn() {
+  public void writeOutput(Output output) {
     String[] arguments = this.getArguments(); // Command arguments.
 
-    // Checking if ls was called on current directory.
-    if (arguments.length == 0) {
-      return this.runOnCurrentDir();
-    } else {
-      return this.runOnDir();
+    // Everything is listed as it was when listing started, even if it is
+    // changed meanwhile.
+    try (Snapshot snapshot = disc.openSnapshot()) {
+      this.snapshot = snapshot;
+
+      // Checking if ls was called on current directory.
+      if (arguments.length == 0) {
+        this.runOnCurrentDir(output);
+      } else {
+        this.runOnDir(output);
+      }
+    } finally {
+      this.snapshot = null;
     }
   }
 
   /**
    * Runs ls on current directory.
    */
-  private String runOnCurrentDir() {
+  private void runOnCurrentDir(Output output) {
     // Checking if command is recursive.
     if (this.isRecursive()) {
-      return this.traverse(disc.getRoot(), 99).trim();
+      this.traverse(disc.getRoot(), "/", 99, output);
     } else {
-      return disc.getCurrentDirectory().fileContents();
+      this.writeNames(disc.getCurrentDirectory(), output);
     }
   }
 
   /**
    * Runs ls on a non-current directory.
    */
-  private String runOnDir() {
+  private void runOnDir(Output output) {
     String[] arguments = this.getArguments(); // Command arguments.
 
     // Validating paths.
     ValidationResults[] results = Checker.validatePaths(arguments);
-    String accum = ""; // Holds descriptions of all files/directories.
 
     for (int i = 0; i < arguments.length; i++) {
       // Checking if this particular path was valid.
@@ -136,19 +137,20 @@ public class CommandLS extends Command {
 
         // Checking if file is a text file.
         if (file instanceof TextFile) {
-          accum += file.getName();
+          output.append(file.getName());
         } else {
           // Checking if command is recursive.
           if (this.isRecursive()) {
             // NOTE: depth > 99 might result in a stack overflow.
-            accum += this.traverse((Directory) file, 99);
+            this.traverse((Directory) file, file.getPath(), 99, output);
           } else {
             // Checking if ls was called on a single directory.
             if (arguments.length == 1) {
-              accum += file.fileContents(); // Don't need to display dir name.
+              // Don't need to display dir name.
+              this.writeNames((Directory) file, output);
             } else {
               // Depth of 0, no need to recurse.
-              accum += this.traverse((Directory) file, 0);
+              this.traverse((Directory) file, file.getPath(), 0, output);
             }
           }
         }
@@ -157,29 +159,34 @@ public class CommandLS extends Command {
         this.errors += ("ls: " + results[i].getMessage() + "\n");
       }
     }
-    return accum.trim();
   }
 
   /**
-   * Recursively traverses file as long as depth is > 0. Returns the contents of
-   * directories and names of files.
+   * Recursively traverses dir, found at path, as long as depth is > 0. Writes
+   * the contents of directories and names of files.
    */
-  private String traverse(Directory dir, int depth) {
+  private void traverse(Directory dir, String path, int depth,
+      Output output) {
+    // Contents and their names as of the snapshot, in the same order.
+    File[] contents = this.snapshot.getContents(dir);
+    String[] names = this.snapshot.getContentArray(dir);
+
     // File is a directory, checking if depth allows for further traversing.
-    String contents = this.dirDescription(dir);
+    this.writeDescription(path, names, output);
     if (depth > 0) {
-      for (File f : (dir).getContents()) {
-        if (f instanceof Directory) {
+      for (int i = 0; i < contents.length; i++) {
+        if (contents[i] instanceof Directory) {
           depth--; // Decreasing depth with each traverse.
-          contents += (this.traverse((Directory) f, depth));
+          String childPath =
+              "/".equals(path) ? path + names[i] : path + "/" + names[i];
+          this.traverse((Directory) contents[i], childPath, depth, output);
         }
       }
     }
-    return contents;
   }
 
   /**
-   * Returns any stdErrors collected when running executeReturn().
+   * Returns any stdErrors collected when running writeOutput().
    * 
    * @return any stdErrors.
    */
@@ -188,15 +195,35 @@ public class CommandLS extends Command {
   }
 
   /**
-   * Returns the description of a directory in form: 
+   * Writes the description of a directory in form: 
    *    <directory name>:
    *    <directory contents> (if any)
    */
-  private String dirDescription(Directory dir) {
-    if (!(dir.isEmpty())) {
-      return (dir.getPath() + ":\n" + dir.fileContents() + "\n\n");
-    } else {
-      return dir.getPath() + ":\n\n";
+  private void writeDescription(String path, String[] names, Output output) {
+    output.append(path).append(":\n");
+    if (names.length != 0) {
+      this.writeNames(names, output);
+      output.append("\n");
+    }
+    output.append("\n");
+  }
+
+  /**
+   * Writes the names of all files in a directory in a single line, each
+   * separated by a space.
+   */
+  private void writeNames(Directory dir, Output output) {
+    this.writeNames(this.snapshot.getContentArray(dir), output);
+  }
+
+  /**
+   * Writes names in a single line, each separated by a space.
+   */
+  private void writeNames(String[] names, Output output) {
+    String separator = "";
+    for (String name : names) {
+      output.append(separator).append(name);
+      separator = " ";
     }
   }
 
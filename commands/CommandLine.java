@@ -0,0 +1,193 @@
+package commands;
+
+import java.util.Arrays;
+
+/**
+ * Represents a line entered by the user, split into tokens in a single pass.
+ * Tokens are separated by whitespace, except inside quotation marks, so that
+ * quoted text (for echo) stays together as one token, quotes included. The
+ * redirection symbols (ie. overwrite/append symbols ">" and ">>") and the pipe
+ * symbol ("|") are tokens of their own wherever they appear outside of quotes.
+ *
+ * Tokens are kept as offsets into the line, and only turned into strings once
+ * they are asked for.
+ */
+public class CommandLine {
+
+  // Kinds of tokens.
+  public final static byte WORD = 0; // Anything but a symbol.
+  public final static byte OVERWRITE = 1; // The overwrite symbol (>).
+  public final static byte APPEND = 2; // The append symbol (>>).
+  public final static byte PIPE = 3; // The pipe symbol (|).
+
+  private final static int INITIAL_CAPACITY = 8; // Tokens room is made for.
+
+  private final String line; // Line that was split.
+  private int size = 0; // Number of tokens.
+  private int[] starts = new int[INITIAL_CAPACITY]; // Offset of each token.
+  private int[] ends = new int[INITIAL_CAPACITY]; // Offset after each token.
+  private byte[] kinds = new byte[INITIAL_CAPACITY]; // Kind of each token.
+  private int redirection = -1; // Index of the first redirection symbol.
+  private int pipe = -1; // Index of the first pipe symbol.
+
+  /**
+   * Initializes new CommandLine for line, with no tokens yet.
+   */
+  private CommandLine(String line) {
+    this.line = line;
+  }
+
+  /**
+   * Splits line into tokens. A quote that is never closed runs to the end of
+   * the line.
+   *
+   * @param line some line entered by the user.
+   * @return CommandLine object holding the tokens of line.
+   */
+  public static CommandLine lex(String line) {
+    CommandLine result = new CommandLine(line);
+    int length = line.length();
+    int i = 0;
+
+    while (i < length) {
+      char c = line.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '>') {
+        // Redirection symbols do not need whitespace around them.
+        if (i + 1 < length && line.charAt(i + 1) == '>') {
+          result.add(i, i + 2, APPEND);
+          i += 2;
+        } else {
+          result.add(i, i + 1, OVERWRITE);
+          i++;
+        }
+      } else if (c == '|') {
+        // Neither do pipe symbols.
+        result.add(i, i + 1, PIPE);
+        i++;
+      } else {
+        // Reading a word up to the next whitespace, redirection symbol or pipe
+        // symbol outside of quotes.
+        int start = i;
+        while (i < length) {
+          c = line.charAt(i);
+          if (c == '"') {
+            int close = line.indexOf('"', i + 1);
+            i = (close < 0) ? length : close + 1;
+          } else if (Character.isWhitespace(c) || c == '>' || c == '|') {
+            break;
+          } else {
+            i++;
+          }
+        }
+        result.add(start, i, WORD);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Records the token between start and end.
+   */
+  private void add(int start, int end, byte kind) {
+    // Making room for more tokens if needed.
+    if (this.size == this.starts.length) {
+      int capacity = this.size * 2;
+      this.starts = Arrays.copyOf(this.starts, capacity);
+      this.ends = Arrays.copyOf(this.ends, capacity);
+      this.kinds = Arrays.copyOf(this.kinds, capacity);
+    }
+    if ((kind == OVERWRITE || kind == APPEND) && this.redirection < 0) {
+      this.redirection = this.size;
+    }
+    if (kind == PIPE && this.pipe < 0) {
+      this.pipe = this.size;
+    }
+    this.starts[this.size] = start;
+    this.ends[this.size] = end;
+    this.kinds[this.size] = kind;
+    this.size++;
+  }
+
+  /**
+   * Returns the number of tokens.
+   *
+   * @return number of tokens in this CommandLine.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the text of the token at index.
+   *
+   * @param index index of some token.
+   * @return text of the token, quotes included.
+   */
+  public String getText(int index) {
+    return this.line.substring(this.starts[index], this.ends[index]);
+  }
+
+  /**
+   * Returns the kind of the token at index (WORD, OVERWRITE, APPEND or PIPE).
+   *
+   * @param index index of some token.
+   * @return kind of the token.
+   */
+  public byte getKind(int index) {
+    return this.kinds[index];
+  }
+
+  /**
+   * Returns the index of the first redirection symbol, or -1 if there is
+   * none.
+   *
+   * @return index of the first OVERWRITE or APPEND token, or -1.
+   */
+  public int getRedirection() {
+    return this.redirection;
+  }
+
+  /**
+   * Returns the index of the first pipe symbol, or -1 if there is none.
+   *
+   * @return index of the first PIPE token, or -1.
+   */
+  public int getPipe() {
+    return this.pipe;
+  }
+
+  /**
+   * Returns the tokens from index from up to, but excluding, index to, as a
+   * line of their own.
+   *
+   * @param from index of the first token.
+   * @param to index after the last token.
+   * @return CommandLine object holding the tokens between from and to.
+   */
+  public CommandLine slice(int from, int to) {
+    CommandLine result = new CommandLine(this.line);
+    for (int i = from; i < to; i++) {
+      result.add(this.starts[i], this.ends[i], this.kinds[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the text of the tokens from index from up to, but excluding,
+   * index to.
+   *
+   * @param from index of the first token.
+   * @param to index after the last token.
+   * @return array of token texts.
+   */
+  public String[] getTexts(int from, int to) {
+    String[] texts = new String[Math.max(to - from, 0)];
+    for (int i = 0; i < texts.length; i++) {
+      texts[i] = this.getText(from + i);
+    }
+    return texts;
+  }
+
+}
@@ -73,15 +73,11 @@ public class CommandMAN extends Command {
    */
   @Override
   public void execute() {
-    // Checking if output is to be redirected.
-    if (this.getRedirector() != null) {
-      Redirector r = this.getRedirector();
-      r.setToWrite(this.executeReturn()); // Adding output to Redirector.
-      r.redirect(); // Redirecting to file.
-    } else {
-      // Printing out documentation.
-      System.out.println(this.executeReturn());
-    }
+    // Writing out documentation, to a file or pipe if output is to be
+    // redirected.
+    Output output = this.getOutput();
+    output.append(this.executeReturn());
+    output.close();
   }
 
   /**
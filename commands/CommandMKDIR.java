@@ -4,6 +4,7 @@ import sys_files.FileSystem;
 import sys_files.Directory;
 import exceptions.InvalidFileNameException;
 import exceptions.InvalidPathException;
+import exceptions.ReadOnlyFileException;
 
 /**
  * Representation of a command that creates directories.
@@ -58,6 +59,14 @@ public class CommandMKDIR extends Command {
 
     // Checking if the number of arguments is correct.
     if (arguments.length >= MANDATORY_NUM_OF_ARGUMENTS) {
+      // Checking if directories can be created where each path leads.
+      for (String argument : arguments) {
+        ValidationResults res =
+            Checker.validateWritable(disc.retrieveParentPath(argument));
+        if (!res.isValid()) {
+          return res;
+        }
+      }
       return new ValidationResults(true, null);
     } else {
       return new ValidationResults(false, "Require at least "
@@ -96,6 +105,8 @@ public class CommandMKDIR extends Command {
           System.out.println(ex.getMessage());
         } catch (InvalidPathException ex) { // If path for directory is invalid.
           System.out.println(ex.getMessage());
+        } catch (ReadOnlyFileException ex) { // If it would be in a mount.
+          System.out.println(ex.getMessage());
         }
       } else {
         // Error message for each invalid path.
@@ -0,0 +1,97 @@
+package commands;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import sys_files.FileSystem;
+import exceptions.InvalidFileNameException;
+import exceptions.InvalidPathException;
+import exceptions.ReadOnlyFileException;
+
+/**
+ * Representation of a command that shows a directory on the host as a
+ * read-only directory in the file system.
+ */
+public class CommandMOUNT extends Command {
+
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
+  /**
+   * Initializes new CommandMOUNT with no arguments.
+   */
+  public CommandMOUNT() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandMOUNT with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandMOUNT(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "mount";
+  }
+
+  /**
+   * Returns the documentation for this CommandMOUNT object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Shows a directory on the host as a new read-only directory.\n"
+        + "Its contents are only read from the host once they are used.\n"
+        + "Mounted directories are not saved to images or checkpoints.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandMOUNT object.
+   * 
+   * Arguments must be in form: mount HOSTPATH DIR, where HOSTPATH is the path
+   * of a directory on the host and DIR is a Directory object to be created.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 2;
+    if (arguments.length == MANDATORY_NUM_OF_ARGUMENTS) {
+      // Checking if the host directory exists.
+      if (!Files.isDirectory(Paths.get(arguments[0]))) {
+        return new ValidationResults(false, arguments[0]
+            + ": No such directory on the host.");
+      }
+      // Checking if the new directory can be created.
+      if (disc.contains(arguments[1])) {
+        return new ValidationResults(false, arguments[1]
+            + ": File already exists.");
+      }
+      ValidationResults result =
+          Checker.validatePath(disc.retrieveParentPath(arguments[1]));
+      if (!result.isValid()) {
+        return result;
+      }
+      return Checker.validateWritable(disc.retrieveParentPath(arguments[1]));
+    }
+    return new ValidationResults(false, "Requires "
+        + MANDATORY_NUM_OF_ARGUMENTS + " arguments.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    try {
+      disc.mount(this.getArguments()[0], this.getArguments()[1]);
+    } catch (InvalidFileNameException | InvalidPathException
+        | ReadOnlyFileException ex) {
+      System.out.println("mount: " + ex.getMessage());
+    }
+  }
+
+}
@@ -1,11 +1,17 @@
 package commands;
 
+import sys_files.Directory;
+import sys_files.File;
+import sys_files.FileSystem;
+
 /**
  * Representation of a command that moves or renames files/directories to their
  * specified destinations/names.
  */
 public class CommandMV extends CommandCP {
 
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
   /**
    * Initializes new CommandMV with no arguments.
    */
@@ -39,6 +45,40 @@ public class CommandMV extends CommandCP {
         + "destinations.");
   }
 
+  /**
+   * Returns whether or not arguments are valid for this CommandMV object.
+   * 
+   * Arguments must be in the same form as for cp, and the file being moved
+   * must not be inside a read-only directory, since moving it deletes it from
+   * there.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    if (arguments.length > 0) {
+      final String OLDPATH = arguments[0]; // File path.
+      File toMove = disc.fileAt(OLDPATH); // File to move.
+
+      // Checking if the file can be taken out of where it is.
+      if (toMove != null && toMove.getParentFile() != null
+          && toMove.getParentFile().isReadOnly()) {
+        return new ValidationResults(false, OLDPATH
+            + ": Read-only file system.");
+      }
+      // Checking if the directory would be moved into itself while being
+      // renamed, which a rename alone cannot tell.
+      if (toMove instanceof Directory && arguments.length == 2) {
+        File into = disc.fileAt(disc.retrieveParentPath(arguments[1]));
+        for (File f = into; f != null; f = f.getParentFile()) {
+          if (f == toMove) {
+            return new ValidationResults(false,
+                "Cannot move/copy to a subdirectory of itself.");
+          }
+        }
+      }
+    }
+    return super.validArguments(arguments);
+  }
+
   /**
    * Runs this command.
    */
@@ -0,0 +1,18 @@
+package commands;
+
+/**
+ * Represents a source of commands other than the ones built into the shell.
+ * Providers are found with java.util.ServiceLoader, so a provider is plugged
+ * in by listing its class in META-INF/services/commands.CommandProvider on the
+ * class path.
+ */
+public interface CommandProvider {
+
+  /**
+   * Adds every command supplied by this provider to registry.
+   * 
+   * @param registry CommandRegistry object the commands are added to.
+   */
+  void registerCommands(CommandRegistry registry);
+
+}
@@ -0,0 +1,51 @@
+package commands;
+
+/**
+ * Representation of a command that makes the changes undone by the last
+ * undo commands of the session again.
+ */
+public class CommandREDO extends CommandUNDO {
+
+  /**
+   * Initializes new CommandREDO with no arguments.
+   */
+  public CommandREDO() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandREDO with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandREDO(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "redo";
+  }
+
+  /**
+   * Returns the documentation for this CommandREDO object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Makes the changes undone by undo again, for up to N commands\n"
+        + "(1 by default), most recently undone first. Nothing can be redone\n"
+        + "once a command changes files after an undo.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    this.undoRedo(false); // Redoes commands.
+  }
+
+}
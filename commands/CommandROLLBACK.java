@@ -0,0 +1,86 @@
+package commands;
+
+import java.io.IOException;
+
+import sys_files.FileSystem;
+
+/**
+ * Representation of a command that replaces the whole file system with one
+ * saved earlier by CommandSNAPSHOT.
+ */
+public class CommandROLLBACK extends Command {
+
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
+  /**
+   * Initializes new CommandROLLBACK with no arguments.
+   */
+  public CommandROLLBACK() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandROLLBACK with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandROLLBACK(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "rollback";
+  }
+
+  /**
+   * Returns the documentation for this CommandROLLBACK object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Replaces the whole file system with the one saved under a name\n"
+        + "by snapshot. What was saved is kept, so it can be rolled back to\n"
+        + "again. Every session goes back to the root directory.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandROLLBACK
+   * object.
+   * 
+   * Arguments must be in form: rollback NAME, where NAME is a name the file
+   * system has been saved under.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 1;
+    if (arguments.length == MANDATORY_NUM_OF_ARGUMENTS) {
+      // Checking if anything was saved under the name.
+      if (!disc.hasSavedTree(arguments[0])) {
+        return new ValidationResults(false, arguments[0]
+            + ": No such snapshot.");
+      }
+      return new ValidationResults(true, null);
+    }
+    return new ValidationResults(false, "Requires "
+        + MANDATORY_NUM_OF_ARGUMENTS + " argument.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    String name = this.getArguments()[0];
+    try {
+      if (!disc.rollback(name)) {
+        System.out.println("rollback: " + name + ": No such snapshot.");
+      }
+    } catch (IOException ex) {
+      System.out.println("rollback: " + ex.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+package commands;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Represents the table of every command the shell knows about, mapping the
+ * name a command is entered by to a way of creating it. The table is built
+ * once, from the built-in commands followed by any commands plugged in
+ * through a CommandProvider.
+ */
+public class CommandRegistry {
+
+  // Ways of creating each command, by lower case command name.
+  private HashMap<String, Supplier<? extends Command>> commands =
+      new HashMap<String, Supplier<? extends Command>>();
+
+  /**
+   * Initializes new CommandRegistry with the built-in commands, followed by
+   * the ones supplied by every CommandProvider on the class path. Private in
+   * case someone tries to create a CommandRegistry instance.
+   */
+  private CommandRegistry() {
+    this.register("cat", CommandCAT::new);
+    this.register("cd", CommandCD::new);
+    this.register("cp", CommandCP::new);
+    this.register("echo", CommandECHO::new);
+    this.register("exclaim", CommandEXCLAIM::new);
+    this.register("!", CommandEXCLAIM::new);
+    this.register("exit", CommandEXIT::new);
+    this.register("grep", CommandGREP::new);
+    this.register("load", CommandLOAD::new);
+    this.register("ls", CommandLS::new);
+    this.register("man", CommandMAN::new);
+    this.register("mkdir", CommandMKDIR::new);
+    this.register("mount", CommandMOUNT::new);
+    this.register("mv", CommandMV::new);
+    this.register("pwd", CommandPWD::new);
+    this.register("redo", CommandREDO::new);
+    this.register("rollback", CommandROLLBACK::new);
+    this.register("save", CommandSAVE::new);
+    this.register("snapshot", CommandSNAPSHOT::new);
+    this.register("snapshots", CommandSNAPSHOTS::new);
+    this.register("source", CommandSOURCE::new);
+    this.register("undo", CommandUNDO::new);
+
+    // Commands plugged in from outside the shell can replace built-in ones.
+    for (CommandProvider provider : ServiceLoader.load(CommandProvider.class)) {
+      provider.registerCommands(this);
+    }
+  }
+
+  /**
+   * Holds the CommandRegistry instance, which is created the first time it is
+   * asked for. Class initialization makes sure only one is ever created, even
+   * when many threads ask for it at once.
+   */
+  private static class Holder {
+    private final static CommandRegistry INSTANCE = new CommandRegistry();
+  }
+
+  /**
+   * Returns the CommandRegistry instance, creating it if there is none yet.
+   * 
+   * @return CommandRegistry instance.
+   */
+  public static CommandRegistry getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Adds a command entered by name, created by constructor. Replaces any
+   * command already entered by that name.
+   * 
+   * @param name name the command is entered by.
+   * @param constructor creates a new Command object with no arguments.
+   */
+  public void register(String name, Supplier<? extends Command> constructor) {
+    this.commands.put(name.toLowerCase(Locale.ROOT), constructor);
+  }
+
+  /**
+   * Returns a new instance of the command entered by name, or null if there
+   * is no such command. Command names are not case sensitive.
+   * 
+   * @param name name of some command.
+   * @return new Command object, or null.
+   */
+  public Command create(String name) {
+    Supplier<? extends Command> constructor =
+        this.commands.get(name.toLowerCase(Locale.ROOT));
+    return (constructor != null) ? constructor.get() : null;
+  }
+
+  /**
+   * Returns the names of all commands, in alphabetical order.
+   * 
+   * @return set of command names.
+   */
+  public Set<String> getNames() {
+    return new TreeSet<String>(this.commands.keySet());
+  }
+
+}
@@ -0,0 +1,122 @@
+package commands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import sys_files.FileSystem;
+import sys_files.Journal;
+import sys_files.Session;
+import sys_files.UndoHistory;
+
+/**
+ * Runs commands, one line at a time, whether they are entered by the user or
+ * read from a script file on the host.
+ */
+public class CommandRunner {
+
+  private final static int MAX_DEPTH = 16; // Most scripts sourced in a row.
+
+  // Number of scripts being run by each thread, one inside another.
+  private final static ThreadLocal<int[]> depth =
+      ThreadLocal.withInitial(() -> new int[1]);
+
+  /**
+   * Initializes new CommandRunner. Private in case someone tries to create a
+   * CommandRunner instance.
+   */
+  private CommandRunner() {}
+
+  /**
+   * Runs command, printing an error message if it is not a valid command or
+   * fails while running. The changes it makes are recorded as one step that
+   * can be undone. Checkpoints of the file system are only taken between
+   * commands.
+   *
+   * @param command some command, with no surrounding white space.
+   * @return true if command ran, otherwise false.
+   */
+  public static boolean run(String command) {
+    boolean succeeded = true;
+
+    // Can reset the file system.
+    if ("rest".equals(command)) {
+      FileSystem.getInstance().cleanUp();
+    } else {
+      // Checking if the entered command is valid.
+      UndoHistory history = Session.current().getUndoHistory();
+      UndoHistory.Step step = history.startStep();
+      try {
+        Command cmd = Checker.getCommand(command, false);
+        cmd.execute(); // Execute command if its valid.
+      } catch (Exception ex) {
+        System.out.println(ex.getMessage());
+        succeeded = false;
+      } finally {
+        step.close();
+      }
+    }
+
+    Journal journal = FileSystem.getInstance().getJournal();
+    if (journal != null) {
+      journal.checkpointIfDue();
+    }
+    return succeeded;
+  }
+
+  /**
+   * Runs every command in the script file at hostPath, one per line, without
+   * showing a prompt. Blank lines and lines starting with # are skipped. Once
+   * done, prints how many commands were run and how fast.
+   *
+   * @param hostPath path of the script file on the host.
+   * @param stopOnError true if the script is to stop at the first command that
+   *        fails, otherwise false.
+   * @return true if every command ran, otherwise false.
+   * @throws IOException if the script file cannot be read.
+   */
+  public static boolean runScript(String hostPath, boolean stopOnError)
+      throws IOException {
+    int[] scripts = depth.get();
+    if (scripts[0] == MAX_DEPTH) {
+      throw new IOException(hostPath + ": Too many scripts inside each other.");
+    }
+    scripts[0]++;
+
+    int commands = 0; // Number of commands run.
+    int failures = 0; // Number of commands that failed.
+    long start = System.nanoTime();
+    try (BufferedReader reader =
+        Files.newBufferedReader(Paths.get(hostPath), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String command = line.trim();
+        if (command.isEmpty() || command.startsWith("#")) {
+          continue;
+        }
+        commands++;
+        if (!CommandRunner.run(command)) {
+          failures++;
+          if (stopOnError) {
+            System.out.println(hostPath + ": Stopped at command " + commands
+                + ": " + command);
+            break;
+          }
+        }
+      }
+    } finally {
+      scripts[0]--;
+    }
+
+    // Reporting on the run.
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format(Locale.ROOT,
+        "%s: %d commands (%d failed) in %.3f s, %.0f commands/s", hostPath,
+        commands, failures, seconds, commands / Math.max(seconds, 1e-9)));
+    return failures == 0;
+  }
+
+}
@@ -0,0 +1,76 @@
+package commands;
+
+import java.io.IOException;
+
+import sys_files.FileSystem;
+
+/**
+ * Representation of a command that saves the whole file system to an image
+ * file on the host.
+ */
+public class CommandSAVE extends Command {
+
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
+  /**
+   * Initializes new CommandSAVE with no arguments.
+   */
+  public CommandSAVE() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandSAVE with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandSAVE(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "save";
+  }
+
+  /**
+   * Returns the documentation for this CommandSAVE object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Saves the whole file system to an image file on the host, which\n"
+        + "can be loaded back with load.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandSAVE object.
+   * 
+   * Arguments must be in form: save FILE, where FILE is the path of the image
+   * file on the host.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 1;
+    if (arguments.length == MANDATORY_NUM_OF_ARGUMENTS) {
+      return new ValidationResults(true, null);
+    }
+    return new ValidationResults(false, "Requires "
+        + MANDATORY_NUM_OF_ARGUMENTS + " argument.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    try {
+      disc.saveImage(this.getArguments()[0]);
+    } catch (IOException ex) {
+      System.out.println("save: " + ex.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,71 @@
+package commands;
+
+import sys_files.FileSystem;
+
+/**
+ * Representation of a command that saves the whole file system under a name,
+ * so that it can be rolled back to later.
+ */
+public class CommandSNAPSHOT extends Command {
+
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
+  /**
+   * Initializes new CommandSNAPSHOT with no arguments.
+   */
+  public CommandSNAPSHOT() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandSNAPSHOT with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandSNAPSHOT(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "snapshot";
+  }
+
+  /**
+   * Returns the documentation for this CommandSNAPSHOT object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Saves the whole file system under a name, replacing whatever was\n"
+        + "saved under that name before. Use rollback to go back to it.\n"
+        + "Nothing is copied until files change.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandSNAPSHOT
+   * object.
+   * 
+   * Arguments must be in form: snapshot NAME, where NAME is any name.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 1;
+    if (arguments.length == MANDATORY_NUM_OF_ARGUMENTS) {
+      return new ValidationResults(true, null);
+    }
+    return new ValidationResults(false, "Requires "
+        + MANDATORY_NUM_OF_ARGUMENTS + " argument.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    disc.saveTree(this.getArguments()[0]);
+  }
+
+}
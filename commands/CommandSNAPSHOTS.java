@@ -0,0 +1,76 @@
+package commands;
+
+import sys_files.FileSystem;
+
+/**
+ * Representation of a command that lists the names the whole file system has
+ * been saved under.
+ */
+public class CommandSNAPSHOTS extends Command {
+
+  private FileSystem disc = FileSystem.getInstance(); // FileSystem instance.
+
+  /**
+   * Initializes new CommandSNAPSHOTS with no arguments.
+   */
+  public CommandSNAPSHOTS() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandSNAPSHOTS with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandSNAPSHOTS(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "snapshots";
+  }
+
+  /**
+   * Returns the documentation for this CommandSNAPSHOTS object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Lists the names the file system has been saved under with\n"
+        + "snapshot, oldest first.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandSNAPSHOTS
+   * object.
+   * 
+   * CommandSNAPSHOTS does not take in any arguments.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 0;
+    if (arguments.length == MANDATORY_NUM_OF_ARGUMENTS) {
+      return new ValidationResults(true, null);
+    } else {
+      return new ValidationResults(false, "Does not take in any arguments.");
+    }
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    // Writing out every name on a line of its own, to a file or pipe if output
+    // is to be redirected.
+    Output output = this.getOutput();
+    for (String name : disc.getSavedTreeNames()) {
+      output.append(name).append("\n");
+    }
+    output.close();
+  }
+
+}
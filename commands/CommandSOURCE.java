@@ -0,0 +1,89 @@
+package commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Representation of a command that runs the commands in a script file on the
+ * host.
+ */
+public class CommandSOURCE extends Command {
+
+  private final static String STOP_FLAG = "-e"; // Stops at the first failure.
+
+  /**
+   * Initializes new CommandSOURCE with no arguments.
+   */
+  public CommandSOURCE() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandSOURCE with an array of arguments.
+   *
+   * @param arguments arguments for command.
+   */
+  public CommandSOURCE(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "source";
+  }
+
+  /**
+   * Returns the documentation for this CommandSOURCE object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Runs the commands in a file on the host, one per line, skipping\n"
+        + "blank lines and lines starting with #. If -e is supplied, stops\n"
+        + "at the first command that fails. Once done, displays how many\n"
+        + "commands were run and how fast.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandSOURCE object.
+   *
+   * Arguments must be in form: source [-e] FILE, where FILE is the path of a
+   * script file on the host.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MANDATORY_NUM_OF_ARGUMENTS = 1;
+
+    // Not counting the optional flag.
+    int offset = (arguments.length > 0 && STOP_FLAG.equals(arguments[0])) ? 1
+        : 0;
+    if (arguments.length - offset == MANDATORY_NUM_OF_ARGUMENTS) {
+      // Checking if the script file exists on the host.
+      if (!Files.isRegularFile(Paths.get(arguments[offset]))) {
+        return new ValidationResults(false, arguments[offset]
+            + ": No such script file.");
+      }
+      return new ValidationResults(true, null);
+    }
+    return new ValidationResults(false, "Requires "
+        + MANDATORY_NUM_OF_ARGUMENTS + " argument.");
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    String[] arguments = this.getArguments();
+    boolean stopOnError = STOP_FLAG.equals(arguments[0]);
+    try {
+      CommandRunner.runScript(arguments[arguments.length - 1], stopOnError);
+    } catch (IOException ex) {
+      System.out.println("source: " + ex.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+package commands;
+
+import sys_files.Session;
+import sys_files.UndoHistory;
+
+/**
+ * Representation of a command that undoes the changes made by the last
+ * commands of the session.
+ */
+public class CommandUNDO extends Command {
+
+  /**
+   * Initializes new CommandUNDO with no arguments.
+   */
+  public CommandUNDO() {
+    super();
+  }
+
+  /**
+   * Initializes new CommandUNDO with an array of arguments.
+   * 
+   * @param arguments arguments for command.
+   */
+  public CommandUNDO(String[] arguments) {
+    super(arguments);
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "undo";
+  }
+
+  /**
+   * Returns the documentation for this CommandUNDO object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Undoes the changes made by the last N commands (1 by default),\n"
+        + "most recent first. Stops at a command whose changes have since\n"
+        + "been changed again by someone else.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this CommandUNDO object.
+   * 
+   * Arguments must be in form: undo/redo [N], where N is an integer that is
+   * greater than or equal to 1.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    final int MAX_NUM_OF_ARGUMENTS = 1;
+    if (arguments.length > MAX_NUM_OF_ARGUMENTS) {
+      return new ValidationResults(false, "Takes at most "
+          + MAX_NUM_OF_ARGUMENTS + " argument.");
+    }
+    if (arguments.length == MAX_NUM_OF_ARGUMENTS) {
+      try {
+        if (Integer.parseInt(arguments[0]) < 1) {
+          return new ValidationResults(false, "Argument is out of bounds");
+        }
+      } catch (NumberFormatException ex) {
+        return new ValidationResults(false, "Argument must be an integer");
+      }
+    }
+    return new ValidationResults(true, null);
+  }
+
+  /**
+   * Runs this command.
+   */
+  @Override
+  public void execute() {
+    this.undoRedo(true); // Undoes commands.
+  }
+
+  /**
+   * Undoes (if undo is true) or redoes the number of commands given as the
+   * argument, printing why if not all of them could be.
+   * 
+   * @param undo true if commands are to be undone, false if they are to be
+   *        redone.
+   */
+  protected void undoRedo(boolean undo) {
+    int steps = 1; // Number of commands to undo/redo.
+    if (this.getArguments().length > 0) {
+      steps = Integer.parseInt(this.getArguments()[0]);
+    }
+
+    UndoHistory history = Session.current().getUndoHistory();
+    int moved = undo ? history.undo(steps) : history.redo(steps);
+    if (moved < steps) {
+      int left = undo ? history.numUndoable() : history.numRedoable();
+      String name = this.getCommandName();
+      if (left == 0) {
+        System.out.println(name + ": Nothing left to " + name + ".");
+      } else {
+        System.out.println(name + ": Files have been changed since; cannot "
+            + name + " further.");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+package commands;
+
+/**
+ * Represents somewhere command output goes. Commands append their output bit
+ * by bit as they produce it; it is collected into chunks of at most
+ * CHUNK_SIZE characters, and each full chunk is handed on as soon as it is
+ * filled, so output never has to be held in memory all at once.
+ *
+ * Output can be trimmed, in which case any white space at the very start and
+ * at the very end of it is dropped, just like String.trim() would.
+ */
+public abstract class Output implements Appendable {
+
+  public final static int CHUNK_SIZE = 8192; // Most characters in a chunk.
+
+  private final StringBuilder chunk = new StringBuilder(); // Current chunk.
+  // White space that is only written once something else follows it.
+  private final StringBuilder held = new StringBuilder();
+  private boolean trimmed = false; // Whether surrounding white space is cut.
+  private boolean written = false; // Whether anything has been written.
+  private boolean closed = false; // Whether this output has been closed.
+
+  /**
+   * Makes this output drop white space at its start and end.
+   *
+   * @return this Output object.
+   */
+  public Output trimmed() {
+    this.trimmed = true;
+    return this;
+  }
+
+  /**
+   * Returns whether or not nothing has been written to this output yet.
+   *
+   * @return true if no output has been written, otherwise false.
+   */
+  public boolean isEmpty() {
+    return !this.written;
+  }
+
+  /**
+   * Adds text to this output.
+   */
+  @Override
+  public Output append(CharSequence text) {
+    return this.append(text, 0, text.length());
+  }
+
+  /**
+   * Adds the characters of text between start and end to this output.
+   */
+  @Override
+  public Output append(CharSequence text, int start, int end) {
+    if (!this.trimmed) {
+      this.put(text, start, end);
+      return this;
+    }
+    int i = start;
+    while (i < end) {
+      // Holding back a run of white space, or dropping it if nothing has been
+      // written yet.
+      int j = i;
+      while (j < end && text.charAt(j) <= ' ') {
+        j++;
+      }
+      if (j > i) {
+        if (this.written) {
+          this.held.append(text, i, j);
+        }
+        i = j;
+        continue;
+      }
+      // Writing a run of anything else, after any white space held back.
+      while (j < end && text.charAt(j) > ' ') {
+        j++;
+      }
+      if (this.held.length() > 0) {
+        this.put(this.held, 0, this.held.length());
+        this.held.setLength(0);
+      }
+      this.put(text, i, j);
+      i = j;
+    }
+    return this;
+  }
+
+  /**
+   * Adds c to this output.
+   */
+  @Override
+  public Output append(char c) {
+    return this.append(String.valueOf(c));
+  }
+
+  /**
+   * Copies the characters of text between start and end into chunks, handing
+   * on every chunk that fills up.
+   */
+  private void put(CharSequence text, int start, int end) {
+    if (start < end) {
+      this.written = true;
+    }
+    while (start < end) {
+      int n = Math.min(end - start, CHUNK_SIZE - this.chunk.length());
+      this.chunk.append(text, start, start + n);
+      start += n;
+      if (this.chunk.length() == CHUNK_SIZE) {
+        this.flush();
+      }
+    }
+  }
+
+  /**
+   * Hands on whatever is in the current chunk.
+   */
+  public void flush() {
+    if (this.chunk.length() > 0) {
+      this.writeChunk(this.chunk);
+      this.chunk.setLength(0);
+    }
+  }
+
+  /**
+   * Hands on the last chunk and finishes this output. Any trailing white space
+   * of trimmed output is dropped. Closing an output more than once has no
+   * effect.
+   */
+  public void close() {
+    if (!this.closed) {
+      this.closed = true;
+      this.held.setLength(0);
+      this.flush();
+      this.finish();
+    }
+  }
+
+  /**
+   * Writes chunk to wherever this output goes. chunk is reused once this
+   * method returns.
+   *
+   * Requires a subclass.
+   *
+   * @param chunk next piece of output, at most CHUNK_SIZE characters long.
+   */
+  protected abstract void writeChunk(CharSequence chunk);
+
+  /**
+   * Finishes this output once every chunk has been written. Does nothing
+   * unless overridden.
+   */
+  protected void finish() {}
+
+}
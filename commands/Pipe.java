@@ -0,0 +1,121 @@
+package commands;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Represents a pipe that carries the output of one command to another, one
+ * chunk at a time. The pipe holds at most CAPACITY chunks; a command writing to
+ * a full pipe waits until the command reading from it catches up.
+ */
+public class Pipe extends Output {
+
+  public final static int CAPACITY = 16; // Most chunks held in the pipe.
+
+  // Marks the end of the output, told apart from chunks by identity.
+  private final static String END = new String();
+
+  // Chunks that have been written but not yet read.
+  private final BlockingQueue<String> chunks =
+      new ArrayBlockingQueue<String>(CAPACITY);
+  private volatile boolean readerClosed = false; // Whether reading stopped.
+  private String current = ""; // Chunk being read.
+  private int position = 0; // Position in current of the next character.
+  private boolean ended = false; // Whether the end has been read.
+
+  /**
+   * Adds chunk to this pipe, waiting for room if the pipe is full. Once
+   * nothing reads from this pipe any more, chunk is thrown away.
+   */
+  @Override
+  protected void writeChunk(CharSequence chunk) {
+    if (!this.readerClosed) {
+      this.put(chunk.toString());
+    }
+  }
+
+  /**
+   * Marks the end of the output.
+   */
+  @Override
+  protected void finish() {
+    if (!this.readerClosed) {
+      this.put(END);
+    }
+  }
+
+  /**
+   * Adds chunk to this pipe, waiting for room if the pipe is full.
+   */
+  private void put(String chunk) {
+    try {
+      this.chunks.put(chunk);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the next line written to this pipe, without its line break,
+   * waiting for it to be written if needed.
+   *
+   * @return next line of output, or null if all of it has been read.
+   */
+  public CharSequence readLine() {
+    StringBuilder line = null; // Line spanning more than one chunk.
+    while (true) {
+      // Moving on to the next chunk once the current one has been read.
+      if (this.position == this.current.length()) {
+        if (this.ended || !this.take()) {
+          return line;
+        }
+        continue;
+      }
+      int newline = this.current.indexOf('\n', this.position);
+      int end = (newline < 0) ? this.current.length() : newline;
+      CharSequence piece = this.current.substring(this.position, end);
+      this.position = (newline < 0) ? end : end + 1;
+
+      if (newline >= 0) {
+        return (line == null) ? piece : line.append(piece);
+      }
+      if (line == null) {
+        line = new StringBuilder();
+      }
+      line.append(piece);
+    }
+  }
+
+  /**
+   * Waits for the next chunk and makes it the current one. Returns false once
+   * the end of the output has been reached.
+   */
+  private boolean take() {
+    String chunk;
+    try {
+      chunk = this.chunks.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      chunk = END;
+    }
+    if (chunk == END) {
+      this.ended = true;
+      this.current = "";
+      this.position = 0;
+      return false;
+    }
+    this.current = chunk;
+    this.position = 0;
+    return true;
+  }
+
+  /**
+   * Stops reading from this pipe. Anything written to it from now on is thrown
+   * away, so that the command writing to it never waits for room.
+   */
+  public void closeReading() {
+    this.readerClosed = true;
+    this.chunks.clear();
+  }
+
+}
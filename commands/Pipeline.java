@@ -0,0 +1,110 @@
+package commands;
+
+/**
+ * Representation of commands connected by pipes (ie. cmd1 | cmd2 | ...), where
+ * the output of each command is the input of the next one. All commands run at
+ * the same time, each on a thread of its own.
+ */
+public class Pipeline extends Command {
+
+  private Command[] stages; // Commands, in order.
+  private Pipe[] pipes; // Pipe between each command and the next one.
+
+  /**
+   * Initializes new Pipeline with no commands.
+   */
+  public Pipeline() {
+    super();
+    this.stages = new Command[0];
+    this.pipes = new Pipe[0];
+  }
+
+  /**
+   * Initializes new Pipeline with an array of commands and the pipes between
+   * them, where pipes[i] connects stages[i] to stages[i + 1].
+   *
+   * @param stages commands to be connected, in order.
+   * @param pipes pipes between the commands.
+   */
+  public Pipeline(Command[] stages, Pipe[] pipes) {
+    super();
+    this.stages = stages;
+    this.pipes = pipes;
+  }
+
+  /**
+   * Returns the name of this command.
+   */
+  @Override
+  public String getCommandName() {
+    return "|";
+  }
+
+  /**
+   * Returns the documentation for this Pipeline object.
+   */
+  @Override
+  public String commandDocumentation() {
+    return ("Runs commands at the same time, making the output of each\n"
+        + "command the input of the next one.");
+  }
+
+  /**
+   * Returns whether or not arguments are valid for this Pipeline object.
+   *
+   * A pipeline takes no arguments of its own; each of its commands is validated
+   * when the pipeline is built.
+   */
+  @Override
+  public ValidationResults validArguments(String[] arguments) {
+    return new ValidationResults(true, null);
+  }
+
+  /**
+   * Runs this command, returning once every command in it has finished.
+   */
+  @Override
+  public void execute() {
+    Thread[] threads = new Thread[this.stages.length];
+    for (int i = 0; i < this.stages.length; i++) {
+      final int stage = i;
+      threads[i] = new Thread(() -> this.runStage(stage), "pipeline-" + i);
+      threads[i].start();
+    }
+    // Waiting for every command to finish.
+    for (Thread thread : threads) {
+      boolean interrupted = false;
+      while (thread.isAlive()) {
+        try {
+          thread.join();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Runs the command at index stage, then closes the pipes around it so that
+   * the commands next to it are never left waiting.
+   */
+  private void runStage(int stage) {
+    try {
+      this.stages[stage].execute();
+    } catch (Exception ex) {
+      System.out.println(this.stages[stage].getCommandName() + ": "
+          + ex.getMessage());
+    } finally {
+      if (stage < this.pipes.length) {
+        this.pipes[stage].close();
+      }
+      if (stage > 0) {
+        this.pipes[stage - 1].closeReading();
+      }
+    }
+  }
+
+}
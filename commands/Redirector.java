@@ -6,40 +6,34 @@ import java.util.Arrays;
 import sys_files.*;
 
 /**
- * Represents a command output redirection object.
+ * Represents a command output redirection object. Output is written to the
+ * outfile one chunk at a time; the outfile is only created or overwritten once
+ * the first chunk is ready, so output that fits in a single chunk is computed
+ * before the outfile changes, and is written in one go.
  */
-public class Redirector {
+public class Redirector extends Output {
 
-  private String toWrite; // Output to be redirected.
   private String action; // Redirection action (overwrite/append).
   private String outfile; // Outfile for output.
+  private TextFile redirectTo = null; // Outfile, once it has been opened.
+  private boolean failed = false; // Whether the outfile could not be opened.
+  private int chunks = 0; // Number of chunks written to the outfile.
 
   // FileSystem instance.
   private FileSystem disc = FileSystem.getInstance();
 
   /**
-   * Initializes new Redirector with output to be redirected, redirection
-   * action, and a file to redirect to.
+   * Initializes new Redirector with a redirection action, and a file to
+   * redirect to.
    * 
-   * @param toRedirect output to be redirected.
    * @param action redirection action (overwrite/append).
    * @param file outfile to output.
    */
-  public Redirector(String toRedirect, String action, String file) {
-    this.toWrite = toRedirect;
+  public Redirector(String action, String file) {
     this.action = action;
     this.outfile = file;
   }
 
-  /**
-   * Sets the output to be redirected to newOutput.
-   * 
-   * @param newOutput new command output to be redirected.
-   */
-  public void setToWrite(String newOutput) {
-    this.toWrite = newOutput;
-  }
-
   /**
    * Returns whether or not arguments are valid for this Redirector object.
    * 
@@ -70,7 +64,12 @@ public class Redirector {
       if (!result.isValid()) {
         return new ValidationResults(false, result.getMessage());
       }
-      return new ValidationResults(true, null);
+      // Checking if the outfile can be written to or created.
+      if (FileSystem.getInstance().contains(arguments[1])) {
+        return Checker.validateWritable(arguments[1]);
+      }
+      return Checker.validateWritable(
+          FileSystem.getInstance().retrieveParentPath(arguments[1]));
     } else {
       return new ValidationResults(false,
           "To redirect to a file, you must provide a redirection action and an "
@@ -79,25 +78,64 @@ public class Redirector {
   }
 
   /**
-   * Redirects command output to a file using the appropriate redirection action
-   * (overwrite/append).
+   * Writes chunk to the end of the outfile, opening the outfile first if this
+   * is the first chunk. The first chunk of output that overwrites the outfile
+   * replaces its contents directly.
+   */
+  @Override
+  protected void writeChunk(CharSequence chunk) {
+    if (this.redirectTo == null && this.overwrite()) {
+      this.open(chunk.toString());
+    } else if (this.open("")) {
+      this.redirectTo.appendContents(chunk.toString());
+    }
+    this.chunks++;
+  }
+
+  /**
+   * Opens the outfile if nothing was written to it, so that empty output still
+   * overwrites or appends to it. Output that overwrote the outfile in more
+   * than one chunk is shared with identical contents once it is complete.
    */
-  public void redirect() {
+  @Override
+  protected void finish() {
+    if (this.open("") && this.overwrite() && this.chunks > 1) {
+      this.redirectTo.deduplicateContents();
+    }
+  }
+
+  /**
+   * Opens the outfile using the appropriate redirection action
+   * (overwrite/append), creating it if it does not exist. Overwritten
+   * contents are replaced by first. Returns whether or not the outfile is
+   * open.
+   */
+  private boolean open(String first) {
+    if (this.redirectTo != null || this.failed) {
+      return !this.failed;
+    }
     // Checking if outfile exists.
     if (disc.contains(this.outfile)) {
-      // Getting outfile and writing to it.
-      TextFile redirectTo = (TextFile) disc.fileAt(this.outfile);
-      this.write(redirectTo, this.toWrite);
+      // Getting outfile to write to.
+      this.redirectTo = (TextFile) disc.fileAt(this.outfile);
     } else {
       try {
         // Writing to a new file.
-        TextFile redirectTo = new TextFile(this.outfile);
-        disc.addFile(redirectTo, redirectTo.getParentPath());
-        this.write(redirectTo, this.toWrite);
+        TextFile newFile = new TextFile(this.outfile);
+        disc.addFile(newFile, newFile.getParentPath());
+        this.redirectTo = newFile;
       } catch (Exception ex) {
         System.out.println(ex.getMessage());
+        this.failed = true;
+        return false;
       }
     }
+    if (this.overwrite()) {
+      this.redirectTo.setContents(first);
+    } else if (this.append()) {
+      this.redirectTo.appendContents("\n");
+    }
+    return true;
   }
 
   /**
@@ -114,18 +152,6 @@ public class Redirector {
     return ">>".equals(this.action);
   }
 
-  /**
-   * Writes s to file.
-   */
-  private void write(TextFile file, String s) {
-    if (this.overwrite()) {
-      file.setContents(s);
-    } else if (this.append()) {
-      String newContents = file.fileContents() + "\n" + s;
-      file.setContents(newContents);
-    }
-  }
-
   /**
    * Returns whether or not the following set of arguments contain a redirection
    * action (overwrite/append).
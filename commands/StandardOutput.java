@@ -0,0 +1,27 @@
+package commands;
+
+/**
+ * Represents command output that is displayed to the user. Output that is not
+ * empty is ended with a line break.
+ */
+public class StandardOutput extends Output {
+
+  /**
+   * Displays chunk.
+   */
+  @Override
+  protected void writeChunk(CharSequence chunk) {
+    System.out.append(chunk);
+  }
+
+  /**
+   * Ends the output with a line break, if there was any output.
+   */
+  @Override
+  protected void finish() {
+    if (!this.isEmpty()) {
+      System.out.println();
+    }
+  }
+
+}
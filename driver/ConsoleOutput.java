@@ -0,0 +1,89 @@
+package driver;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the standard output of the shell. Everything printed with
+ * System.out is collected in a single large buffer instead of being flushed
+ * line by line, and is flushed when the buffer fills up, when the shell shows
+ * its prompt, every so often on a timer, and when the shell exits.
+ */
+public class ConsoleOutput {
+
+  public final static int BUFFER_SIZE = 1 << 16; // Bytes held before flushing.
+
+  private final PrintStream stream; // Stream System.out prints to.
+  private final ScheduledExecutorService flusher; // Flushes on a timer.
+
+  /**
+   * Initializes new ConsoleOutput for stream, flushed by flusher (which may be
+   * null).
+   */
+  private ConsoleOutput(PrintStream stream, ScheduledExecutorService flusher) {
+    this.stream = stream;
+    this.flusher = flusher;
+  }
+
+  /**
+   * Makes System.out print into a buffer that is flushed at least every
+   * flushMillis milliseconds.
+   *
+   * @param flushMillis most milliseconds output waits in the buffer, or 0 to
+   *        only flush when the buffer is full or the prompt is shown.
+   * @return the ConsoleOutput that System.out now prints to.
+   */
+  public static ConsoleOutput buffered(long flushMillis) {
+    PrintStream stream =
+        new PrintStream(new BufferedOutputStream(new FileOutputStream(
+            FileDescriptor.out), BUFFER_SIZE), false);
+    System.setOut(stream);
+
+    ScheduledExecutorService flusher = null;
+    if (flushMillis > 0) {
+      flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stdout-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      flusher.scheduleWithFixedDelay(stream::flush, flushMillis, flushMillis,
+          TimeUnit.MILLISECONDS);
+    }
+    // Output still in the buffer is not lost when the shell exits.
+    Runtime.getRuntime().addShutdownHook(new Thread(stream::flush));
+    return new ConsoleOutput(stream, flusher);
+  }
+
+  /**
+   * Leaves System.out as it is, flushing every line as soon as it is printed.
+   * Useful for debugging, where output should show up right away.
+   *
+   * @return a ConsoleOutput for the current System.out.
+   */
+  public static ConsoleOutput unbuffered() {
+    return new ConsoleOutput(System.out, null);
+  }
+
+  /**
+   * Writes out everything in the buffer.
+   */
+  public void flush() {
+    this.stream.flush();
+  }
+
+  /**
+   * Writes out everything in the buffer and stops flushing on a timer.
+   */
+  public void close() {
+    if (this.flusher != null) {
+      this.flusher.shutdownNow();
+    }
+    this.stream.flush();
+  }
+
+}
@@ -1,11 +1,13 @@
 package driver;
 
+import java.io.IOException;
 import java.util.Scanner;
 
 import sys_files.FileSystem;
 import sys_files.History;
-import commands.Command;
-import commands.Checker;
+import sys_files.Journal;
+import commands.CommandRegistry;
+import commands.CommandRunner;
 
 /**
  * Representation of a command-input interface, JShell (simple Lunix Shell).
@@ -19,27 +21,120 @@ public class JShell {
     // For recording user input
     History inputHistory = History.createHistoryInstance();
 
+    // Journal settings, if changes are to be journaled.
+    String journalPath = null;
+    int syncRecords = 64;
+    long syncMillis = 50;
+    int checkpointRecords = 10000;
+    int compactDeltas = 8;
+
+    // Output settings.
+    boolean unbuffered = false;
+    long flushMillis = 100;
+
+    // Script settings, if commands are to be read from a script file.
+    String scriptPath = null;
+    boolean stopOnError = false;
+
+    // Address to serve other users on, if any.
+    String serveAddress = null;
+
+    // Handling startup flags.
+    for (int i = 0; i < args.length; i++) {
+      if ("--dedup".equals(args[i])) {
+        // Storing identical text file contents only once.
+        FileSystem.getInstance().setDeduplicating(true);
+      } else if ("--load".equals(args[i]) && i + 1 < args.length) {
+        // Starting from a saved image of the file system.
+        try {
+          FileSystem.getInstance().loadImage(args[++i]);
+        } catch (IOException ex) {
+          System.out.println("load: " + ex.getMessage());
+        }
+      } else if ("--journal".equals(args[i]) && i + 1 < args.length) {
+        // Recording every change so that it survives a crash.
+        journalPath = args[++i];
+      } else if ("--sync-records".equals(args[i]) && i + 1 < args.length) {
+        syncRecords = Integer.parseInt(args[++i]);
+      } else if ("--sync-ms".equals(args[i]) && i + 1 < args.length) {
+        syncMillis = Long.parseLong(args[++i]);
+      } else if ("--checkpoint-records".equals(args[i])
+          && i + 1 < args.length) {
+        checkpointRecords = Integer.parseInt(args[++i]);
+      } else if ("--compact-deltas".equals(args[i]) && i + 1 < args.length) {
+        compactDeltas = Integer.parseInt(args[++i]);
+      } else if ("--unbuffered".equals(args[i])) {
+        // Showing output as soon as it is printed, for debugging.
+        unbuffered = true;
+      } else if ("--flush-ms".equals(args[i]) && i + 1 < args.length) {
+        flushMillis = Long.parseLong(args[++i]);
+      } else if ("-f".equals(args[i]) && i + 1 < args.length) {
+        // Running a script instead of prompting the user.
+        scriptPath = args[++i];
+      } else if ("-e".equals(args[i])) {
+        stopOnError = true;
+      } else if ("--serve".equals(args[i]) && i + 1 < args.length) {
+        // Letting many users work on the file system over a local socket.
+        serveAddress = args[++i];
+      }
+    }
+
+    // Collecting command output in a single buffer rather than flushing every
+    // line.
+    ConsoleOutput console = unbuffered ? ConsoleOutput.unbuffered()
+        : ConsoleOutput.buffered(flushMillis);
+
+    // Recovering the file system from the journal before recording to it.
+    if (journalPath != null) {
+      try {
+        Journal.open(journalPath, syncRecords, syncMillis,
+            checkpointRecords, compactDeltas);
+      } catch (IOException ex) {
+        System.out.println("journal: " + ex.getMessage());
+      }
+    }
+
+    // Building the table of commands before the first one is entered.
+    CommandRegistry.getInstance();
+
+    // Running the script, if there is one, and exiting once it is done.
+    if (scriptPath != null) {
+      boolean succeeded = false;
+      try {
+        succeeded = CommandRunner.runScript(scriptPath, stopOnError);
+      } catch (IOException ex) {
+        System.out.println("source: " + ex.getMessage());
+      }
+      console.close();
+      System.exit(succeeded ? 0 : 1);
+    }
+
+    // Serving other users, if asked to, instead of prompting the user.
+    if (serveAddress != null) {
+      try {
+        ShellServer server = ShellServer.open(serveAddress);
+        System.out.println("Listening on " + server.getAddress());
+        console.flush();
+        server.serve();
+      } catch (IOException ex) {
+        System.out.println("server: " + ex.getMessage());
+        console.close();
+        System.exit(1);
+      }
+    }
+
     // Continuously prompts user until they exit.
     while (true) {
       System.out.print("/# ");
+      console.flush(); // Everything is shown before waiting for input.
 
-      // Getting user input and remove unwanted white space.
-      String command = input.nextLine().trim().replaceAll("\\s+", " ");
+      // Getting user input and removing surrounding white space. White space
+      // between arguments is dealt with when the command is split up.
+      String command = input.nextLine().trim();
       // Recording user input into History instance
       inputHistory.addCommand(command);
 
-      // Can reset the file system.
-      if ("rest".equals(command)) {
-        FileSystem.getInstance().cleanUp();
-      } else {
-        // Checking if the entered command is valid.
-        try {
-          Command cmd = Checker.getCommand(command, false);
-          cmd.execute(); // Execute command if its valid.
-        } catch (Exception ex) {
-          System.out.println(ex.getMessage());
-        }
-      }
+      CommandRunner.run(command);
     }
   }
 
@@ -0,0 +1,192 @@
+package driver;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+
+import sys_files.Session;
+
+/**
+ * Represents a stream that sends everything printed to it on to the output
+ * stream of the session the printing thread works on behalf of. Installed as
+ * System.out, it lets every session see only its own output.
+ */
+public class SessionPrintStream extends PrintStream {
+
+  /**
+   * Initializes new SessionPrintStream.
+   */
+  public SessionPrintStream() {
+    super(OutputStream.nullOutputStream());
+  }
+
+  /**
+   * Returns the output stream of the current session.
+   */
+  private PrintStream target() {
+    return Session.current().getOut();
+  }
+
+  @Override
+  public void flush() {
+    this.target().flush();
+  }
+
+  @Override
+  public void close() {
+    this.target().flush();
+  }
+
+  @Override
+  public boolean checkError() {
+    return this.target().checkError();
+  }
+
+  @Override
+  public void write(int b) {
+    this.target().write(b);
+  }
+
+  @Override
+  public void write(byte[] buf, int off, int len) {
+    this.target().write(buf, off, len);
+  }
+
+  @Override
+  public void print(boolean b) {
+    this.target().print(b);
+  }
+
+  @Override
+  public void print(char c) {
+    this.target().print(c);
+  }
+
+  @Override
+  public void print(int i) {
+    this.target().print(i);
+  }
+
+  @Override
+  public void print(long l) {
+    this.target().print(l);
+  }
+
+  @Override
+  public void print(float f) {
+    this.target().print(f);
+  }
+
+  @Override
+  public void print(double d) {
+    this.target().print(d);
+  }
+
+  @Override
+  public void print(char[] s) {
+    this.target().print(s);
+  }
+
+  @Override
+  public void print(String s) {
+    this.target().print(s);
+  }
+
+  @Override
+  public void print(Object obj) {
+    this.target().print(obj);
+  }
+
+  @Override
+  public void println() {
+    this.target().println();
+  }
+
+  @Override
+  public void println(boolean x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(char x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(int x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(long x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(float x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(double x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(char[] x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(String x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public void println(Object x) {
+    this.target().println(x);
+  }
+
+  @Override
+  public PrintStream printf(String format, Object... args) {
+    this.target().printf(format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream printf(Locale l, String format, Object... args) {
+    this.target().printf(l, format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream format(String format, Object... args) {
+    this.target().format(format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream format(Locale l, String format, Object... args) {
+    this.target().format(l, format, args);
+    return this;
+  }
+
+  @Override
+  public PrintStream append(CharSequence csq) {
+    this.target().append(csq);
+    return this;
+  }
+
+  @Override
+  public PrintStream append(CharSequence csq, int start, int end) {
+    this.target().append(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public PrintStream append(char c) {
+    this.target().append(c);
+    return this;
+  }
+
+}
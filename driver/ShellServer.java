@@ -0,0 +1,181 @@
+package driver;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sys_files.History;
+import sys_files.Session;
+import commands.CommandRunner;
+
+/**
+ * Represents a shell server that lets many users work on the same file system
+ * at once. Every connection gets a session of its own, with its own current
+ * working directory and its own output, and is served on a thread of its own.
+ */
+public class ShellServer {
+
+  public final static int BUFFER_SIZE = 1 << 16; // Output held per session.
+
+  private final ServerSocketChannel server; // Accepts connections.
+  private final SocketAddress address; // Address being listened on.
+  // Runs every session on a thread of its own.
+  private final ExecutorService sessions;
+
+  /**
+   * Initializes new ShellServer accepting connections from server.
+   */
+  private ShellServer(ServerSocketChannel server) throws IOException {
+    this.server = server;
+    this.address = server.getLocalAddress();
+    AtomicInteger count = new AtomicInteger();
+    this.sessions = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "session-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts listening on address. An address containing a slash is the path of
+   * a Unix domain socket to create; anything else is a TCP port, optionally
+   * preceded by a host name and a colon (the loopback address by default).
+   *
+   * @param address address to listen on.
+   * @return a ShellServer listening on address.
+   * @throws IOException if the address cannot be listened on.
+   */
+  public static ShellServer open(String address) throws IOException {
+    SocketAddress socketAddress;
+    ServerSocketChannel server;
+    if (address.indexOf('/') >= 0) {
+      socketAddress = UnixDomainSocketAddress.of(address);
+      server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+
+      // The socket file is left behind by the operating system otherwise.
+      Path socketFile = Paths.get(address);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          Files.deleteIfExists(socketFile);
+        } catch (IOException ex) {
+          // Nothing more can be done.
+        }
+      }));
+    } else {
+      int colon = address.lastIndexOf(':');
+      InetAddress host = (colon < 0) ? InetAddress.getLoopbackAddress()
+          : InetAddress.getByName(address.substring(0, colon));
+      int port = Integer.parseInt(address.substring(colon + 1));
+      socketAddress = new InetSocketAddress(host, port);
+      server = ServerSocketChannel.open();
+    }
+    try {
+      server.bind(socketAddress);
+    } catch (IOException ex) {
+      server.close();
+      throw ex;
+    }
+    return new ShellServer(server);
+  }
+
+  /**
+   * Returns the address this server listens on.
+   *
+   * @return address of this ShellServer.
+   */
+  public SocketAddress getAddress() {
+    return this.address;
+  }
+
+  /**
+   * Accepts connections until this server is closed, starting a session for
+   * each one.
+   */
+  public void serve() {
+    // Every session prints through System.out to its own connection.
+    Session.getConsole().setOut(System.out);
+    System.setOut(new SessionPrintStream());
+
+    while (this.server.isOpen()) {
+      try {
+        SocketChannel channel = this.server.accept();
+        this.sessions.execute(() -> this.runSession(channel));
+      } catch (IOException ex) {
+        if (this.server.isOpen()) {
+          Session.getConsole().getOut().println("server: " + ex.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Prompts the user at the other end of channel for commands and runs them,
+   * until they exit or disconnect.
+   */
+  private void runSession(SocketChannel channel) {
+    PrintStream out =
+        new PrintStream(new BufferedOutputStream(
+            Channels.newOutputStream(channel), BUFFER_SIZE), false,
+            StandardCharsets.UTF_8);
+    Session session = new Session(out);
+    Session.setCurrent(session);
+
+    try (SocketChannel connection = channel) {
+      BufferedReader input =
+          new BufferedReader(Channels.newReader(connection,
+              StandardCharsets.UTF_8));
+      while (!session.isEnded()) {
+        out.print("/# ");
+        out.flush(); // Everything is shown before waiting for input.
+        String line = input.readLine();
+        if (line == null) {
+          break;
+        }
+        String command = line.trim();
+
+        // Commands from different sessions run side by side; the file system
+        // takes care of its own locking.
+        History history = History.createHistoryInstance();
+        synchronized (history) {
+          history.addCommand(command);
+        }
+        CommandRunner.run(command);
+      }
+      out.flush();
+    } catch (IOException ex) {
+      // The connection was dropped; the session simply ends.
+    } finally {
+      session.end();
+      Session.setCurrent(null);
+    }
+  }
+
+  /**
+   * Stops accepting connections.
+   */
+  public void close() {
+    try {
+      this.server.close();
+    } catch (IOException ex) {
+      // Nothing more can be done.
+    }
+    this.sessions.shutdownNow();
+  }
+
+}
@@ -0,0 +1,44 @@
+package exceptions;
+
+/**
+ * Read-only file error for when someone attempts to change a file that cannot
+ * be changed, such as a file inside a mounted directory.
+ */
+public class ReadOnlyFileException extends Exception {
+
+  /**
+   * Initialize ReadOnlyFileException.
+   */
+  public ReadOnlyFileException() {
+    super();
+  }
+
+  /**
+   * Initialize ReadOnlyFileException with a message.
+   * 
+   * @param message message regarding the error
+   */
+  public ReadOnlyFileException(String message) {
+    super("Read-only file system: " + message);
+  }
+
+  /**
+   * Initialize ReadOnlyFileException with a cause.
+   * 
+   * @param cause reason for error
+   */
+  public ReadOnlyFileException(Throwable cause) {
+    super(cause);
+  }
+
+  /**
+   * Initalize ReadOnlyFileException with both a message and a cause.
+   * 
+   * @param message message regarding the error
+   * @param cause reason for error
+   */
+  public ReadOnlyFileException(String message, Throwable cause) {
+    super("Read-only file system: " + message, cause);
+  }
+
+}
@@ -3,6 +3,7 @@ package sys_files;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import commands.CommandLine;
 import commands.Redirector;
 import commands.ValidationResults;
 import exceptions.InvalidRedirectorException;
@@ -56,45 +57,34 @@ public class Builder {
   }
 
   /**
-   * Returns an array of arguments that contain everything before the
-   * redirection symbol (ie. overwrite/append symbol ">" or ">>").
+   * Returns an array of arguments that contain everything after the command
+   * name and before the redirection symbol (ie. overwrite/append symbol ">"
+   * or ">>").
    * 
-   * @param arguments array of command arguments.
+   * @param line tokens of some command entered by the user.
    * @return array of pre-redirection arguments.
    */
-  public static String[] buildPreRedirectionArguments(String[] arguments) {
-    // Creating an ArrayList to add any ore-redirection arguments to.
-    ArrayList<String> preRedirectionArgs = new ArrayList<String>();
-
-    // Iterating through every argument and storing all pre-redirection ones.
-    for (String args : arguments) {
-      if (!(">".equals(args) || ">>".equals(args))) {
-        preRedirectionArgs.add(args);
-      } else {
-        return preRedirectionArgs
-            .toArray(new String[preRedirectionArgs.size()]);
-      }
-    }
-    // Converting back to array.
-    return preRedirectionArgs.toArray(new String[preRedirectionArgs.size()]);
+  public static String[] buildPreRedirectionArguments(CommandLine line) {
+    // The lexer already knows where the first redirection symbol is.
+    int end = line.getRedirection();
+    return line.getTexts(1, (end < 0) ? line.size() : end);
   }
 
   /**
-   * Returns a Redirector object built from output and arguments.
+   * Returns a Redirector object built from arguments.
    * 
-   * @param output string that the Redirector object will redirect.
    * @param arguments array of arguments for the Redirector object.
-   * @return a Redirector object built from output and arguments.
+   * @return a Redirector object built from arguments.
    * @throws InvalidRedirectorException if a Redirector cannot be created with
    *         arguments.
    */
-  public static Redirector buildRedirector(String output, String[] arguments)
+  public static Redirector buildRedirector(String[] arguments)
       throws InvalidRedirectorException {
 
     // Validating arguments, throwing an exception if they are invalid.
     ValidationResults res = Redirector.validForRedirection(arguments);
     if (res.isValid()) {
-      return new Redirector(output, arguments[0], arguments[1]);
+      return new Redirector(arguments[0], arguments[1]);
     } else {
       throw new InvalidRedirectorException(res.getMessage());
     }
@@ -104,25 +94,14 @@ public class Builder {
    * Returns an array of arguments that contain everything after and including
    * the redirection symbol (ie. overwrite/append symbol ">" or ">>").
    * 
-   * @param arguments array of command arguments.
+   * @param line tokens of some command entered by the user.
    * @return array of redirection arguments.
    */
-  public static String[] buildRedirectionArguments(String[] arguments) {
-    // Checking if arguments contain either one of the redirection symbols.
-    if (Redirector.isRedirectable(arguments)) {
-      // Converting array to ArrayList.
-      ArrayList<String> originalArgs =
-          new ArrayList<String>(Arrays.asList(arguments));
-
-      // Finding the index of a redirection symbol.
-      int index = -1;
-      if (originalArgs.contains(">")) {
-        index = originalArgs.indexOf(">");
-      } else if (originalArgs.contains(">>")) {
-        index = originalArgs.indexOf(">>");
-      }
-      // Returning everything after and including the redirection symbol.
-      return Arrays.copyOfRange(arguments, index, arguments.length);
+  public static String[] buildRedirectionArguments(CommandLine line) {
+    // Checking if there is a redirection symbol.
+    int start = line.getRedirection();
+    if (start >= 0) {
+      return line.getTexts(start, line.size());
     }
     // If there is no redirection symbol.
     return new String[0];
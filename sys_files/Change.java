@@ -0,0 +1,289 @@
+package sys_files;
+
+/**
+ * Represents one change made to the file system, along with what it takes to
+ * undo it and to make it again. A change only keeps what it changed, never
+ * whole directories or whole contents of text files, so undoing and redoing
+ * it take time in proportion to the change.
+ *
+ * A change can only be undone while the file it changed still holds what the
+ * change left it holding, and only be redone while the file still holds what
+ * it held before. This is told by the stamp of the file, which every change
+ * replaces and which undoing and redoing set back.
+ */
+abstract class Change {
+
+  // File whose contents were changed, or null if no contents were.
+  private final File target;
+  private long before; // Stamp of the target before the change.
+  private long after; // Stamp of the target after the change.
+
+  /**
+   * Initializes new Change to the contents of target.
+   *
+   * @param target file whose contents were changed, or null.
+   * @param before stamp of target before the change.
+   * @param after stamp of target after the change.
+   */
+  Change(File target, long before, long after) {
+    this.target = target;
+    this.before = before;
+    this.after = after;
+  }
+
+  /**
+   * Returns whether or not this change can be undone. Requires the change
+   * lock.
+   */
+  boolean canUndo() {
+    return (this.target == null || this.target.getStamp() == this.after)
+        && this.isUndoable();
+  }
+
+  /**
+   * Undoes this change. Requires the change lock.
+   */
+  void undo() {
+    this.revert();
+    if (this.target != null) {
+      this.target.setStamp(this.before);
+    }
+  }
+
+  /**
+   * Returns whether or not this change can be made again. Requires the
+   * change lock.
+   */
+  boolean canRedo() {
+    return (this.target == null || this.target.getStamp() == this.before)
+        && this.isRedoable();
+  }
+
+  /**
+   * Makes this change again. Requires the change lock.
+   */
+  void redo() {
+    this.apply();
+    if (this.target != null) {
+      this.target.setStamp(this.after);
+    }
+  }
+
+  /**
+   * Returns whether or not what this change needs to be undone is still in
+   * place, besides the contents of the target.
+   */
+  boolean isUndoable() {
+    return true;
+  }
+
+  /**
+   * Returns whether or not what this change needs to be made again is still
+   * in place, besides the contents of the target.
+   */
+  boolean isRedoable() {
+    return true;
+  }
+
+  /**
+   * Puts back what the change replaced.
+   */
+  abstract void revert();
+
+  /**
+   * Makes the change.
+   */
+  abstract void apply();
+
+  /**
+   * Lets go of anything held on to for this change, once it can no longer be
+   * undone or redone.
+   */
+  void discard() {}
+
+  /**
+   * A file added to a directory, possibly in place of a file with the same
+   * name.
+   */
+  static class Added extends Change {
+
+    private final Directory dir; // Directory the file was added to.
+    private final File file; // File added.
+    private final File replaced; // File it replaced, or null.
+    private final long replacedOrder; // Where the replaced file was listed.
+
+    /**
+     * Initializes new Added.
+     */
+    Added(Directory dir, File file, File replaced, long replacedOrder,
+        long before, long after) {
+      super(dir, before, after);
+      this.dir = dir;
+      this.file = file;
+      this.replaced = replaced;
+      this.replacedOrder = replacedOrder;
+    }
+
+    @Override
+    void revert() {
+      this.dir.deleteFile(this.file);
+      if (this.replaced != null) {
+        this.dir.restoreFile(this.replaced, this.replacedOrder);
+      }
+    }
+
+    @Override
+    void apply() {
+      this.dir.addFile(this.file);
+    }
+  }
+
+  /**
+   * A file taken out of a directory.
+   */
+  static class Deleted extends Change {
+
+    private final Directory dir; // Directory the file was taken out of.
+    private final File file; // File taken out.
+    private final long order; // Where the file was listed.
+
+    /**
+     * Initializes new Deleted.
+     */
+    Deleted(Directory dir, File file, long order, long before, long after) {
+      super(dir, before, after);
+      this.dir = dir;
+      this.file = file;
+      this.order = order;
+    }
+
+    @Override
+    void revert() {
+      this.dir.restoreFile(this.file, this.order);
+    }
+
+    @Override
+    void apply() {
+      this.dir.deleteFile(this.file);
+    }
+  }
+
+  /**
+   * A file renamed, possibly in place of a file with its new name in the same
+   * directory.
+   */
+  static class Renamed extends Change {
+
+    // Directory the file was renamed in, or null if it was in none.
+    private final Directory dir;
+    private final File file; // File renamed.
+    private final String oldName; // Name of the file before.
+    private final String newName; // Name of the file after.
+    private final File replaced; // File it replaced, or null.
+    private final long replacedOrder; // Where the replaced file was listed.
+
+    /**
+     * Initializes new Renamed.
+     */
+    Renamed(Directory dir, File file, String oldName, String newName,
+        File replaced, long replacedOrder, long before, long after) {
+      super(dir, before, after);
+      this.dir = dir;
+      this.file = file;
+      this.oldName = oldName;
+      this.newName = newName;
+      this.replaced = replaced;
+      this.replacedOrder = replacedOrder;
+    }
+
+    @Override
+    boolean isUndoable() {
+      return this.newName.equals(this.file.getName());
+    }
+
+    @Override
+    boolean isRedoable() {
+      return this.oldName.equals(this.file.getName());
+    }
+
+    @Override
+    void revert() {
+      this.file.renameTo(this.oldName);
+      if (this.replaced != null) {
+        this.dir.restoreFile(this.replaced, this.replacedOrder);
+      }
+    }
+
+    @Override
+    void apply() {
+      this.file.renameTo(this.newName);
+    }
+  }
+
+  /**
+   * The contents of a text file replaced.
+   */
+  static class Written extends Change {
+
+    private final TextFile file; // File written to.
+    // Contents the file does not hold at the moment, either the ones from
+    // before the change or the ones from after it. Held on to.
+    private TextBuffer other;
+
+    /**
+     * Initializes new Written, which takes over the hold on previous.
+     */
+    Written(TextFile file, TextBuffer previous, long before, long after) {
+      super(file, before, after);
+      this.file = file;
+      this.other = previous;
+    }
+
+    @Override
+    void revert() {
+      this.other = this.file.exchangeContents(this.other);
+    }
+
+    @Override
+    void apply() {
+      this.other = this.file.exchangeContents(this.other);
+    }
+
+    @Override
+    void discard() {
+      FileSystem.getInstance().getContentStore().release(this.other);
+    }
+  }
+
+  /**
+   * Text appended to a text file.
+   */
+  static class Appended extends Change {
+
+    private final TextFile file; // File appended to.
+    private final int oldLength; // Length of the file before.
+    private final String text; // Text appended.
+
+    /**
+     * Initializes new Appended.
+     */
+    Appended(TextFile file, int oldLength, String text, long before,
+        long after) {
+      super(file, before, after);
+      this.file = file;
+      this.oldLength = oldLength;
+      this.text = text;
+    }
+
+    @Override
+    void revert() {
+      this.file.truncate(this.oldLength);
+    }
+
+    @Override
+    void apply() {
+      this.file.appendContents(this.text);
+    }
+  }
+
+}
@@ -0,0 +1,470 @@
+package sys_files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the checkpoints of a journaled file system: a base image of the
+ * whole file system, followed by delta checkpoints that only hold the files
+ * changed since the checkpoint before them. Once enough deltas pile up, they
+ * are merged into a new base image in the background.
+ *
+ * The base image is stored at the path of the store, and every delta next to
+ * it with a number appended (base.1, base.2, ...). A delta is laid out as:
+ *
+ * <pre>
+ *    header      magic number, version, the last journal record included and
+ *                the number of files
+ *    files       for each changed file: inode, type, encoding, name, and then
+ *                either the inodes of its contents or its encoded text
+ * </pre>
+ *
+ * Files are identified by inode, so a directory that is only moved or has its
+ * contents changed is stored without anything underneath it.
+ */
+public class CheckpointStore {
+
+  private final static int MAGIC = 0x4A534844; // "JSHD".
+  private final static int VERSION = 1;
+  private final static int HEADER_SIZE = 24; // Bytes in the header.
+
+  // Types of file record.
+  private final static byte DIRECTORY = 0;
+  private final static byte TEXT_FILE = 1;
+
+  private final Path base; // Host path of the base image.
+  private final int compactDeltas; // Deltas that trigger a compaction.
+
+  private long nextDelta = 1; // Number of the next delta to be written.
+  // Deltas written since the base image, by number, with the last journal
+  // record each of them includes.
+  private TreeMap<Long, Long> deltas = new TreeMap<Long, Long>();
+  // Bumped whenever the base image is replaced outright, so that a compaction
+  // that started before then does not overwrite it.
+  private long baseGeneration = 0;
+  private boolean compacting = false; // Whether a compaction is running.
+
+  // Runs compactions in the background.
+  private ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "checkpoint-compactor");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Initializes new CheckpointStore whose base image is at base.
+   *
+   * @param base host path of the base image.
+   * @param compactDeltas number of deltas after which they are merged into
+   *        the base image, or 0 to only merge them on recovery.
+   */
+  public CheckpointStore(Path base, int compactDeltas) {
+    this.base = base;
+    this.compactDeltas = compactDeltas;
+  }
+
+  /**
+   * Returns the last checkpoint of the file system, merging any deltas into
+   * the base image first, or null if there is no checkpoint yet.
+   *
+   * @return FileSystemImage object of the last checkpoint, or null.
+   * @throws IOException if the checkpoint cannot be read.
+   */
+  public FileSystemImage recover() throws IOException {
+    TreeMap<Long, Path> found = new TreeMap<Long, Path>();
+    String prefix = this.base.getFileName() + ".";
+    Path dir = this.base.toAbsolutePath().getParent();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(dir, prefix + "*")) {
+      for (Path p : stream) {
+        String suffix = p.getFileName().toString().substring(prefix.length());
+        if (suffix.matches("[0-9]+")) {
+          found.put(Long.parseLong(suffix), p);
+        }
+      }
+    }
+    if (!found.isEmpty()) {
+      this.nextDelta = found.lastKey() + 1;
+      this.merge(new ArrayList<Path>(found.values()));
+    }
+    if (!Files.isRegularFile(this.base)) {
+      return null;
+    }
+    return FileSystemImage.open(this.base);
+  }
+
+  /**
+   * Writes an image of the whole directory tree under root as the new base
+   * image, dropping all deltas.
+   *
+   * @param root root Directory object of the file system.
+   * @param sequence sequence number of the last journal record included.
+   * @throws IOException if the image cannot be written.
+   */
+  public synchronized void saveFull(Directory root, long sequence)
+      throws IOException {
+    FileSystemImage.save(root, this.base, sequence);
+    this.baseGeneration++;
+    for (long number : this.deltas.keySet()) {
+      Files.deleteIfExists(this.deltaPath(number));
+    }
+    this.deltas.clear();
+  }
+
+  /**
+   * Writes a delta holding changed, the files that were changed since the
+   * last checkpoint, and starts merging the deltas into the base image if
+   * enough of them have piled up.
+   *
+   * @param changed entry for every file changed since the last checkpoint.
+   * @param sequence sequence number of the last journal record included.
+   * @throws IOException if the delta cannot be written.
+   */
+  synchronized void saveDelta(Iterable<FileSystemImage.Entry> changed,
+      long sequence) throws IOException {
+    ArrayList<ByteBuffer> records = new ArrayList<ByteBuffer>();
+    for (FileSystemImage.Entry file : changed) {
+      records.add(CheckpointStore.toRecord(file));
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putLong(sequence)
+        .putInt(records.size()).clear();
+
+    long number = this.nextDelta++;
+    Path path = this.deltaPath(number);
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      CheckpointStore.writeFully(out, header);
+      for (ByteBuffer record : records) {
+        CheckpointStore.writeFully(out, record);
+      }
+      out.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    this.deltas.put(number, sequence);
+
+    if (this.compactDeltas > 0 && !this.compacting
+        && this.deltas.size() >= this.compactDeltas) {
+      this.startCompaction();
+    }
+  }
+
+  /**
+   * Returns the number of deltas written since the base image.
+   *
+   * @return number of delta checkpoints.
+   */
+  public synchronized int numDeltas() {
+    return this.deltas.size();
+  }
+
+  /**
+   * Waits for any running compaction to finish and stops compacting.
+   */
+  public void close() {
+    this.compactor.shutdown();
+    try {
+      this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the host path of the delta with the specified number.
+   */
+  private Path deltaPath(long number) {
+    return this.base.resolveSibling(this.base.getFileName() + "." + number);
+  }
+
+  /**
+   * Merges every delta written so far into the base image on the compactor
+   * thread.
+   */
+  private void startCompaction() {
+    final ArrayList<Path> toMerge = new ArrayList<Path>();
+    for (long number : this.deltas.keySet()) {
+      toMerge.add(this.deltaPath(number));
+    }
+    final long last = this.deltas.lastKey();
+    final long generation = this.baseGeneration;
+    this.compacting = true;
+
+    this.compactor.execute(() -> {
+      try {
+        Path merged = this.base.resolveSibling(this.base.getFileName()
+            + ".merged");
+        FileSystemImage.write(CheckpointStore.mergedRoot(this.base, toMerge),
+            merged, CheckpointStore.lastSequence(this.base, toMerge));
+
+        // Only keeping the result if the base image has not been replaced.
+        synchronized (this) {
+          if (generation == this.baseGeneration) {
+            Files.move(merged, this.base, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+            for (Path p : toMerge) {
+              Files.deleteIfExists(p);
+            }
+            this.deltas.headMap(last, true).clear();
+          } else {
+            Files.deleteIfExists(merged);
+          }
+        }
+      } catch (IOException ex) {
+        System.out.println("checkpoint: " + ex.getMessage());
+      } finally {
+        synchronized (this) {
+          this.compacting = false;
+        }
+      }
+    });
+  }
+
+  /**
+   * Merges the deltas at paths into the base image right away, then deletes
+   * them.
+   */
+  private void merge(ArrayList<Path> paths) throws IOException {
+    Path merged = this.base.resolveSibling(this.base.getFileName()
+        + ".merged");
+    FileSystemImage.write(CheckpointStore.mergedRoot(this.base, paths),
+        merged, CheckpointStore.lastSequence(this.base, paths));
+    Files.move(merged, this.base, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    for (Path p : paths) {
+      Files.deleteIfExists(p);
+    }
+  }
+
+  /**
+   * Returns the sequence number of the last journal record included in the
+   * base image or any of the deltas at paths.
+   */
+  private static long lastSequence(Path base, ArrayList<Path> paths)
+      throws IOException {
+    long sequence = 0;
+    if (Files.isRegularFile(base)) {
+      sequence = FileSystemImage.open(base).getSequence();
+    }
+    for (Path p : paths) {
+      sequence = Math.max(sequence, CheckpointStore.readHeader(p).getLong(8));
+    }
+    return sequence;
+  }
+
+  /**
+   * Returns the root of the file system described by the base image and the
+   * deltas at paths, applied in order. Deltas that are already part of the
+   * base image are skipped.
+   */
+  private static Node mergedRoot(Path base, ArrayList<Path> paths)
+      throws IOException {
+    HashMap<Long, Node> nodes = new HashMap<Long, Node>();
+    long baseSequence = 0;
+
+    // Starting from every file in the base image.
+    if (Files.isRegularFile(base)) {
+      FileSystemImage image = FileSystemImage.open(base);
+      baseSequence = image.getSequence();
+      for (int i = 0; i < image.numNodes(); i++) {
+        Node node = new Node(nodes, image.inodeOf(i), image.nameOf(i),
+            image.isDirectoryAt(i));
+        if (node.directory) {
+          int first = image.firstContent(i);
+          node.contents = new long[image.numContents(i)];
+          for (int j = 0; j < node.contents.length; j++) {
+            node.contents[j] = image.inodeOf(first + j);
+          }
+        } else {
+          node.text = image.textAt(i);
+        }
+        nodes.put(node.inode, node);
+      }
+    }
+
+    // Replacing every file that changed since, in the order of the deltas.
+    for (Path p : paths) {
+      ByteBuffer delta = CheckpointStore.map(p);
+      if (delta.getLong(8) <= baseSequence) {
+        continue;
+      }
+      int count = delta.getInt(16);
+      delta.position(HEADER_SIZE);
+      for (int i = 0; i < count; i++) {
+        Node node = CheckpointStore.readRecord(delta, nodes);
+        nodes.put(node.inode, node);
+      }
+    }
+
+    Node root = nodes.get(FileSystem.ROOT_INODE);
+    if (root == null) {
+      root = new Node(nodes, FileSystem.ROOT_INODE, "", true);
+      root.contents = new long[0];
+    }
+    return root;
+  }
+
+  /**
+   * Returns the header of the delta at path, checking that it is one.
+   */
+  private static ByteBuffer readHeader(Path path) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (header.hasRemaining() && in.read(header) >= 0) {
+        continue;
+      }
+    }
+    if (header.hasRemaining() || header.getInt(0) != MAGIC
+        || header.getInt(4) != VERSION) {
+      throw new IOException(path + ": Not a delta checkpoint.");
+    }
+    return header;
+  }
+
+  /**
+   * Maps the delta at path into memory, checking that it is one.
+   */
+  private static ByteBuffer map(Path path) throws IOException {
+    CheckpointStore.readHeader(path);
+    try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+      return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+    }
+  }
+
+  /**
+   * Returns the record of file in a delta.
+   */
+  private static ByteBuffer toRecord(FileSystemImage.Entry file) {
+    byte[] name = file.getName().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer record;
+    if (file.isDirectory()) {
+      FileSystemImage.Entry[] contents = file.getContents();
+      record = ByteBuffer.allocate(Long.BYTES + 2 + Integer.BYTES
+          + name.length + Integer.BYTES + Long.BYTES * contents.length);
+      record.putLong(file.getInode()).put(DIRECTORY).put((byte) 0)
+          .putInt(name.length).put(name).putInt(contents.length);
+      for (FileSystemImage.Entry f : contents) {
+        record.putLong(f.getInode());
+      }
+    } else {
+      TextBuffer text = file.getText();
+      record = ByteBuffer.allocate(Long.BYTES + 2 + Integer.BYTES
+          + name.length + Integer.BYTES + text.byteLength());
+      record.putLong(file.getInode()).put(TEXT_FILE).put(text.getCoder())
+          .putInt(name.length).put(name).putInt(text.byteLength())
+          .put(text.encoded());
+    }
+    record.flip();
+    return record;
+  }
+
+  /**
+   * Reads the next record from delta into a new Node, which shares the text
+   * of text files with delta rather than copying it.
+   */
+  private static Node readRecord(ByteBuffer delta, HashMap<Long, Node> nodes) {
+    long inode = delta.getLong();
+    byte type = delta.get();
+    byte coder = delta.get();
+    byte[] name = new byte[delta.getInt()];
+    delta.get(name);
+    Node node = new Node(nodes, inode,
+        new String(name, StandardCharsets.UTF_8), type == DIRECTORY);
+    if (node.directory) {
+      node.contents = new long[delta.getInt()];
+      for (int i = 0; i < node.contents.length; i++) {
+        node.contents[i] = delta.getLong();
+      }
+    } else {
+      int length = delta.getInt();
+      ByteBuffer text = delta.duplicate();
+      text.limit(text.position() + length);
+      node.text = new TextBuffer(text, coder);
+      delta.position(delta.position() + length);
+    }
+    return node;
+  }
+
+  /**
+   * Writes all remaining bytes of buffer to out.
+   */
+  private static void writeFully(FileChannel out, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  /**
+   * File of a checkpoint being merged, referring to the files inside it by
+   * inode.
+   */
+  private static class Node implements FileSystemImage.Entry {
+
+    private final HashMap<Long, Node> nodes; // Every file, by inode.
+    private final long inode; // Inode of this file.
+    private final String name; // Name of this file.
+    private final boolean directory; // Whether this file is a directory.
+    private long[] contents; // Inodes of the files inside this directory.
+    private TextBuffer text; // Contents of this text file.
+
+    /**
+     * Initializes new Node for a file with the specified inode and name.
+     */
+    Node(HashMap<Long, Node> nodes, long inode, String name,
+        boolean directory) {
+      this.nodes = nodes;
+      this.inode = inode;
+      this.name = name;
+      this.directory = directory;
+    }
+
+    @Override
+    public long getInode() {
+      return this.inode;
+    }
+
+    @Override
+    public String getName() {
+      return this.name;
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return this.directory;
+    }
+
+    @Override
+    public FileSystemImage.Entry[] getContents() {
+      ArrayList<Node> found = new ArrayList<Node>(this.contents.length);
+      for (long child : this.contents) {
+        Node node = this.nodes.get(child);
+        if (node != null) {
+          found.add(node);
+        }
+      }
+      return found.toArray(new FileSystemImage.Entry[found.size()]);
+    }
+
+    @Override
+    public TextBuffer getText() {
+      return this.text;
+    }
+  }
+
+}
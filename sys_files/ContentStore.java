@@ -0,0 +1,120 @@
+package sys_files;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Represents a store of text file contents in which every distinct body of
+ * text is kept only once. Bodies are looked up by a hash of their bytes and
+ * dropped from the store once no text file holds them anymore. The store can
+ * be used from many threads at once.
+ */
+public class ContentStore {
+
+  // FNV-1a hash parameters.
+  private final static long FNV_OFFSET = 0xcbf29ce484222325L;
+  private final static long FNV_PRIME = 0x100000001b3L;
+
+  private boolean enabled = false; // Whether new contents are deduplicated.
+
+  // Stored bodies of text, by hash.
+  private HashMap<Long, ArrayList<TextBuffer>> bodies =
+      new HashMap<Long, ArrayList<TextBuffer>>();
+
+  /**
+   * Returns whether or not new contents are deduplicated.
+   *
+   * @return true if this ContentStore is in use, otherwise false.
+   */
+  public synchronized boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Sets whether or not new contents are deduplicated. Contents stored before
+   * are left as they are.
+   *
+   * @param enabled true if this ContentStore is to be used.
+   */
+  public synchronized void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns the stored body of text that is identical to body, storing body
+   * first if there is none. If this store is not in use, returns body.
+   *
+   * @param body some body of text.
+   * @return TextBuffer object to be used in place of body.
+   */
+  public synchronized TextBuffer intern(TextBuffer body) {
+    if (!this.enabled) {
+      return body;
+    }
+
+    // Looking for an identical body among the ones with the same hash.
+    long hash = ContentStore.hash(body.encoded());
+    ArrayList<TextBuffer> sameHash = this.bodies.get(hash);
+    if (sameHash == null) {
+      sameHash = new ArrayList<TextBuffer>(1);
+      this.bodies.put(hash, sameHash);
+    }
+    for (TextBuffer stored : sameHash) {
+      if (stored.getCoder() == body.getCoder()
+          && stored.encoded().equals(body.encoded())) {
+        return stored;
+      }
+    }
+    sameHash.add(body);
+    body.setInterned(hash);
+    return body;
+  }
+
+  /**
+   * Records that a text file no longer holds body, dropping body from this
+   * store if nothing holds it anymore.
+   *
+   * @param body some body of text that was held by a text file.
+   */
+  public synchronized void release(TextBuffer body) {
+    body.release();
+    if (body.isInterned() && !body.isHeld()) {
+      ArrayList<TextBuffer> sameHash = this.bodies.get(body.getHash());
+      // Bodies interned before the store was replaced are not in this one.
+      if (sameHash == null) {
+        return;
+      }
+      sameHash.remove(body);
+      if (sameHash.isEmpty()) {
+        this.bodies.remove(body.getHash());
+      }
+    }
+  }
+
+  /**
+   * Returns the number of distinct bodies of text in this store.
+   *
+   * @return number of stored bodies.
+   */
+  public synchronized int size() {
+    int size = 0;
+    for (ArrayList<TextBuffer> sameHash : this.bodies.values()) {
+      size += sameHash.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the remaining bytes in bytes.
+   */
+  private static long hash(ByteBuffer bytes) {
+    long hash = FNV_OFFSET;
+    for (int i = bytes.position(); i < bytes.limit(); i++) {
+      hash ^= (bytes.get(i) & 0xFF);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+}
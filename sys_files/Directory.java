@@ -1,7 +1,9 @@
 package sys_files;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import exceptions.InvalidFileNameException;
 import exceptions.InvalidPathException;
@@ -9,11 +11,49 @@ import exceptions.InvalidPathException;
 /**
  * Represents a folder-like object used to store, retrieve, and delete various
  * File objects.
+ * 
+ * The contents are kept in a table that never changes; every change puts a
+ * new table in place, so methods that only look at the contents never lock
+ * anything. Tables that snapshots of the file system may still be reading are
+ * kept around until those snapshots are closed. Methods that change the
+ * contents must be called under the change lock of the file system, and hold
+ * the lock of this directory while changing them; contents are also
+ * read in or copied over under that lock.
+ * 
+ * A copy of a directory starts out with the table of the original, and
+ * shares the files in it with the original until one of them is used through
+ * the copy or is about to change. Only then does the copy get a copy of that
+ * one file, in the same place in the table.
  */
 public class Directory extends File {
 
-  // List of File objects contained within this Directory.
-  private ArrayList<File> contents = new ArrayList<File>();
+  // File objects contained within this Directory, keyed by file name, as of
+  // each version of the file system that may still be read, newest first.
+  // Listings come out in the order files were added.
+  private volatile Version<FileTable> contents =
+      new Version<FileTable>(0, FileTable.EMPTY, null);
+  // Held while the contents are changed, read in or copied over.
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // While this directory is a copy whose contents have not been copied yet,
+  // the directory it is a copy of; otherwise null.
+  private volatile Directory copiedFrom = null;
+  // Once the contents have been copied over, the directory whose files this
+  // directory still shares, or null if it shares none. Keeps that directory
+  // around, so that it can still tell this one about changes to them.
+  private Directory sharedFrom = null;
+  // Number of files in the table that are shared with sharedFrom. Both are
+  // only used under the change lock.
+  private int numShared = 0;
+  // Copies of this directory that have not been copied over yet, or that
+  // still share some of its files. Copies that are no longer used anywhere
+  // are left to be collected. Only used under the change lock.
+  private ArrayList<WeakReference<Directory>> copies = null;
+  // Inodes that checkpoints gave to the files this directory shares, if
+  // any. Only used under the change lock.
+  private SharedInodes sharedInodes = null;
+  // Whether the contents of this directory have been read in yet.
+  private volatile boolean loaded = true;
 
   /**
    * Initializes new root Directory.
@@ -22,6 +62,62 @@ public class Directory extends File {
     super();
   }
 
+  /**
+   * Initializes new Directory as a copy of original, with parent as its
+   * parent. The contents of original are not copied until this copy is first
+   * used, or until original is about to change.
+   * 
+   * @param original Directory object to be copied.
+   * @param parent parent for the copy.
+   */
+  protected Directory(Directory original, Directory parent) {
+    super(original, parent);
+    this.copyLater(original);
+  }
+
+  /**
+   * Initializes new Directory as a copy of original, with parent as its
+   * parent, taking over the inodes a checkpoint gave to it and to the files
+   * underneath it while they were shared.
+   */
+  private Directory(Directory original, Directory parent,
+      SharedInodes inodes) {
+    super(original.getName(), parent, inodes.getInode());
+    this.sharedInodes = inodes;
+    this.copyLater(original);
+  }
+
+  /**
+   * Initializes new root Directory as a copy of original. The contents of
+   * original are not copied until this copy is first used, or until original
+   * is about to change.
+   * 
+   * @param original Directory object to be copied.
+   */
+  Directory(Directory original) {
+    super();
+    this.copyLater(original);
+  }
+
+  /**
+   * Makes this directory a copy of original whose contents are only copied
+   * over once they are needed.
+   */
+  private void copyLater(Directory original) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      this.copiedFrom = original;
+      original.liveCopies(); // Dropping copies it no longer has to tell.
+      if (original.copies == null) {
+        original.copies = new ArrayList<WeakReference<Directory>>();
+      }
+      original.copies.add(new WeakReference<Directory>(this));
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
   /**
    * Initializes new Directory with directory name (if pathName is not a path)
    * in the current directory. Otherwise, initializes a new Directory at
@@ -63,7 +159,380 @@ public class Directory extends File {
   public Directory(String dirName, String path, File[] contents)
       throws InvalidFileNameException, InvalidPathException {
     super(dirName, path);
-    this.setContents(contents);
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      this.setContents(contents);
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Initializes new Directory with the specified name, parent and inode, whose
+   * contents are read in by loadContents() when they are first used.
+   * 
+   * @param dirName name for this Directory object.
+   * @param parent parent for this Directory object, or null for a root.
+   * @param inode inode for this Directory object.
+   */
+  protected Directory(String dirName, Directory parent, long inode) {
+    super(dirName, parent, inode);
+    this.loaded = false;
+  }
+
+  /**
+   * Reads in the contents of this directory, adding each file with
+   * addLoadedFile(). Called once, when the contents are first used.
+   * 
+   * Requires a subclass whose contents are read in lazily.
+   */
+  protected void loadContents() {}
+
+  /**
+   * Marks the contents of this directory as not read in yet, so that
+   * loadContents() is called once they are first used. Must be called before
+   * anything is added to this directory.
+   */
+  protected void deferLoading() {
+    this.loaded = false;
+  }
+
+  /**
+   * Adds a file that was read in by loadContents() to this directory. Only to
+   * be called from loadContents().
+   * 
+   * @param file File object whose parent is this Directory.
+   */
+  protected void addLoadedFile(File file) {
+    // Files read in were always there, as far as snapshots are concerned.
+    this.contents = new Version<FileTable>(0,
+        this.table().put(file.getName(), file), null);
+  }
+
+  /**
+   * Returns the current contents of this directory, without reading in or
+   * copying over anything.
+   */
+  private FileTable table() {
+    return this.contents.getValue();
+  }
+
+  /**
+   * Puts table in place as the contents of this directory, as of the version
+   * of the file system being changed. Requires the change lock and the lock
+   * lock of this directory.
+   */
+  private void setTable(FileTable table) {
+    FileSystem disc = FileSystem.getInstance();
+    long version = disc.getChangeVersion();
+    Version<FileTable> head = this.contents;
+    // Only the last of several changes within one version is kept.
+    Version<FileTable> older =
+        (head.getNumber() == version) ? head.getOlder() : head;
+    this.contents = new Version<FileTable>(version, table, older);
+    disc.versionAdded(this);
+    this.setStamp(disc.newStamp());
+  }
+
+  /**
+   * Drops the contents this directory had as of versions of the file system
+   * older than oldest, other than the ones as of oldest itself.
+   */
+  @Override
+  boolean pruneVersions(long oldest) {
+    return this.contents.prune(oldest);
+  }
+
+  /**
+   * Returns whether or not the contents of this directory have been read in.
+   * 
+   * @return true if the contents of this Directory are in memory.
+   */
+  protected boolean isLoaded() {
+    return this.loaded;
+  }
+
+  /**
+   * Returns a copy of this directory and everything underneath it, placed in
+   * the same parent directory but not yet added to it. Nothing underneath is
+   * copied until either side is used or changed.
+   */
+  @Override
+  public Directory copy() {
+    return new Directory(this, (Directory) this.getParentFile());
+  }
+
+  /**
+   * Copies over the contents of the directory this directory is a copy of, if
+   * that has not happened yet. Only the table is copied: the files in it are
+   * shared with the original until ownCopy() gives this directory copies of
+   * its own. Also reads in the contents of this directory if they have not
+   * been read in yet. Unless the change lock is held, must not be called while
+   * holding the lock of any directory.
+   */
+  private void materialize() {
+    if (this.copiedFrom != null) {
+      // The original must not change while it is being copied.
+      FileSystem disc = FileSystem.getInstance();
+      disc.lockChanges();
+      this.lock.lock();
+      try {
+        Directory original = this.copiedFrom;
+        if (original != null) {
+          original.materialize();
+          FileTable table = original.table();
+          // The copy held the same as the original all along.
+          this.contents = new Version<FileTable>(0, table, null);
+          this.numShared = table.size();
+          this.sharedFrom = (this.numShared > 0) ? original : null;
+          if (this.numShared == 0) {
+            this.sharedInodes = null;
+          }
+
+          // Only once the contents are in place do readers stop going to the
+          // original for them. The original drops this copy from its copies
+          // once it shares nothing with it.
+          this.copiedFrom = null;
+        }
+      } finally {
+        this.lock.unlock();
+        disc.unlockChanges();
+      }
+    } else if (!this.loaded) {
+      this.lock.lock();
+      try {
+        if (!this.loaded) {
+          // Readers only look at the contents once they are all read in.
+          try {
+            this.loadContents();
+          } finally {
+            this.loaded = true;
+          }
+        }
+      } finally {
+        this.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Gives this directory its own copy of file, which it shares with the
+   * directory it is a copy of, in the same place in its table. Nothing reading
+   * this directory can tell the two apart, so the change is not recorded as
+   * one. The copy takes over any inode a checkpoint already gave to file
+   * here; otherwise the journal is told about it. Copies of this directory
+   * that share file get their own copies of it too, since this directory can
+   * no longer tell them when it changes. Requires the change lock, and this
+   * directory to have been copied over.
+   */
+  private void ownCopy(File file) {
+    String name = file.getName();
+    File copy;
+    SharedInodes inodes;
+    this.lock.lock();
+    try {
+      if (this.numShared == 0 || this.table().get(name) != file) {
+        return;
+      }
+      inodes = (this.sharedInodes != null) ? this.sharedInodes.take(name)
+          : null;
+      if (file instanceof Directory) {
+        copy = (inodes != null) ? new Directory((Directory) file, this, inodes)
+            : new Directory((Directory) file, this);
+      } else {
+        copy = (inodes != null)
+            ? new TextFile((TextFile) file, this, inodes.getInode())
+            : new TextFile((TextFile) file, this);
+      }
+      Version<FileTable> head = this.contents;
+      this.contents = new Version<FileTable>(head.getNumber(),
+          head.getValue().replace(name, copy), head.getOlder());
+      if (--this.numShared == 0) {
+        this.sharedFrom = null;
+        this.sharedInodes = null;
+      }
+    } finally {
+      this.lock.unlock();
+    }
+    Journal journal = FileSystem.getInstance().getJournal();
+    if (inodes == null && journal != null) {
+      journal.recordOwnCopy(copy, this);
+    }
+    for (Directory sharer : this.liveCopies()) {
+      if (sharer.copiedFrom == null) {
+        sharer.ownCopy(file);
+      }
+    }
+  }
+
+  /**
+   * Gives this directory its own copies of all the files it shares with the
+   * directory it is a copy of.
+   */
+  private void ownSharedFiles() {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      this.materialize();
+      for (File file : this.table().files()) {
+        if (file.getParentFile() != this) {
+          this.ownCopy(file);
+        }
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Returns the copies of this directory that are not copied over yet, or
+   * that still share some of its files, dropping the rest. Requires the
+   * change lock.
+   */
+  private ArrayList<Directory> liveCopies() {
+    ArrayList<Directory> live = new ArrayList<Directory>();
+    if (this.copies != null) {
+      this.copies.removeIf(ref -> {
+        Directory copy = ref.get();
+        if (copy == null
+            || (copy.copiedFrom != this && copy.sharedFrom != this)) {
+          return true;
+        }
+        live.add(copy);
+        return false;
+      });
+      if (this.copies.isEmpty()) {
+        this.copies = null;
+      }
+    }
+    return live;
+  }
+
+  /**
+   * Makes sure that no copy of dir, or of any directory above it, can observe
+   * a change that is about to be made to dir or to child, a file directly
+   * inside it. Going from the top down, pending copies of each directory are
+   * copied over, and copies that share the next directory down (or child) get
+   * their own copy of it.
+   * 
+   * Requires the change lock.
+   * 
+   * @param dir Directory object about to change.
+   * @param child File object in dir about to change, or null.
+   */
+  static void beforeChange(Directory dir, File child) {
+    // Collecting dir and the directories above it.
+    ArrayList<File> path = new ArrayList<File>();
+    if (child != null) {
+      path.add(child);
+    }
+    for (File f = dir; f instanceof Directory; f = f.getParentFile()) {
+      path.add(f);
+    }
+    int last = (child != null) ? 1 : 0;
+    for (int i = path.size() - 1; i >= last; i--) {
+      File next = (i > 0) ? path.get(i - 1) : null;
+      for (Directory copy : ((Directory) path.get(i)).liveCopies()) {
+        copy.materialize();
+        if (next != null) {
+          copy.ownCopy(next);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets dir ready to be changed: copies that must not see the change are
+   * copied over, and its own contents are copied over or read in, so that
+   * none of that happens while its lock is held. Files stored under names in
+   * dir are about to be replaced, renamed or taken out, so dir gets its own
+   * copies of them, and so do copies of dir that share them. Requires the
+   * change lock.
+   * 
+   * @param dir Directory object about to change.
+   * @param names names of the files in dir about to be replaced or taken out.
+   */
+  static void prepareChange(Directory dir, String... names) {
+    Directory.beforeChange(dir, null);
+    dir.materialize();
+    for (String name : names) {
+      File file = dir.table().get(name);
+      if (file == null) {
+        continue;
+      } else if (file.getParentFile() != dir) {
+        dir.ownCopy(file);
+      } else {
+        Directory.beforeChange(dir, file);
+      }
+    }
+  }
+
+  /**
+   * Takes the locks of both a and b, locking a parent before its child
+   * and otherwise the directory with the lower inode first. Requires the
+   * change lock, and both directories to have been prepared with
+   * prepareChange().
+   * 
+   * @param a some Directory object.
+   * @param b some Directory object, which may be a.
+   */
+  static void lockInOrder(Directory a, Directory b) {
+    Directory first = a;
+    Directory second = b;
+    if (a.isUnder(b) || (!b.isUnder(a) && b.getInode() < a.getInode())) {
+      first = b;
+      second = a;
+    }
+    first.lock.lock();
+    second.lock.lock();
+  }
+
+  /**
+   * Releases the locks taken by lockInOrder(a, b).
+   * 
+   * @param a some Directory object.
+   * @param b some Directory object, which may be a.
+   */
+  static void unlockBoth(Directory a, Directory b) {
+    a.lock.unlock();
+    b.lock.unlock();
+  }
+
+  /**
+   * Returns whether or not this directory is somewhere underneath dir.
+   */
+  private boolean isUnder(Directory dir) {
+    for (File f = this.getParentFile(); f != null; f = f.getParentFile()) {
+      if (f == dir) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds the number of bytes of text in all text files underneath this
+   * directory to totals[0], and the number of bytes of those text buffers not
+   * already in seen to totals[1]. Pending copies are measured through their
+   * originals and shared files where they are, so nothing gets copied.
+   * Mounted directories are not stored in the file system and are left out.
+   * Requires the change lock.
+   */
+  void measure(long[] totals, IdentityHashMap<TextBuffer, Boolean> seen) {
+    for (File file : this.getContents(Long.MAX_VALUE)) {
+      if (file instanceof MountedDirectory) {
+        continue;
+      } else if (file instanceof Directory) {
+        ((Directory) file).measure(totals, seen);
+      } else {
+        TextBuffer buffer = ((TextFile) file).getContents();
+        totals[0] += buffer.byteLength();
+        if (seen.put(buffer, Boolean.TRUE) == null) {
+          totals[1] += buffer.byteLength();
+        }
+      }
+    }
   }
 
   /**
@@ -82,14 +551,31 @@ public class Directory extends File {
 
     // Lists all files/directories in a single line, each separated by a space.
     String dirContents = "";
-    if (this.contents.size() != 0) {
-      for (File file : this.contents) {
-        dirContents += (file.getName() + " ");
-      }
+    for (String name : this.getContentArray()) {
+      dirContents += (name + " ");
     }
     return dirContents.trim();
   }
 
+  /**
+   * Returns the contents of this directory as of version of the file system.
+   * Reads in the contents if that has not happened yet, but never copies any
+   * over.
+   */
+  private FileTable tableAsOf(long version) {
+    // A pending copy holds what its original held.
+    Directory original = this.copiedFrom;
+    if (original != null) {
+      FileTable table = original.tableAsOf(version);
+      // The original only changes once this copy has been materialized.
+      if (this.copiedFrom == original) {
+        return table;
+      }
+    }
+    this.materialize(); // Only reads in contents, since this is not a copy.
+    return this.contents.asOf(version);
+  }
+
   /**
    * Returns an array of contents of this directory where each element is a name
    * of a File object stored within this directory.
@@ -98,16 +584,18 @@ public class Directory extends File {
    *         Directory.
    */
   public String[] getContentArray() {
+    return this.tableAsOf(Long.MAX_VALUE).names();
+  }
 
-    // Transferring the names of all files to an ArrayList,
-    ArrayList<String> tempContents = new ArrayList<String>();
-    for (File f : this.contents) {
-      tempContents.add(f.getName());
-    }
-
-    // Converting tempContents from ArrayList to Array.
-    String[] contents = new String[tempContents.size()];
-    return tempContents.toArray(contents);
+  /**
+   * Returns the names of the files this directory held as of version of the
+   * file system, in the same order as getContents(version).
+   * 
+   * @param version version of the file system from a Snapshot.
+   * @return array of names of the contents of this Directory back then.
+   */
+  String[] getContentArray(long version) {
+    return this.tableAsOf(version).names();
   }
 
   /**
@@ -118,10 +606,64 @@ public class Directory extends File {
    *         Directory.
    */
   public File[] getContents() {
+    this.materialize();
+    File[] files = this.table().files();
+    for (File file : files) {
+      // Files handed out must be the ones of this directory.
+      if (file.getParentFile() != this) {
+        this.ownSharedFiles();
+        return this.table().files();
+      }
+    }
+    return files;
+  }
 
-    // Converting contents from ArrayList to Array.
-    File[] asArray = new File[this.contents.size()];
-    return this.contents.toArray(asArray);
+  /**
+   * Returns the files this directory held as of version of the file system,
+   * without copying over the contents of a pending copy. The files of a
+   * pending copy are then those of its original.
+   * 
+   * @param version version of the file system from a Snapshot.
+   * @return array of contents of this Directory back then.
+   */
+  File[] getContents(long version) {
+    return this.tableAsOf(version).files();
+  }
+
+  /**
+   * Returns the File object with the specified name stored within this
+   * directory, or null if there is no such file.
+   * 
+   * @param fileName name of some File object.
+   * @return File object named fileName, or null if it does not exist.
+   */
+  public File getFile(String fileName) {
+    this.materialize();
+    File file = this.table().get(fileName);
+    if (file != null && file.getParentFile() != this) {
+      // Files handed out must be the ones of this directory.
+      FileSystem disc = FileSystem.getInstance();
+      disc.lockChanges();
+      try {
+        this.ownCopy(file);
+      } finally {
+        disc.unlockChanges();
+      }
+      file = this.table().get(fileName);
+    }
+    return file;
+  }
+
+  /**
+   * Returns the File object this directory held under fileName as of version
+   * of the file system, or null if there was no such file.
+   * 
+   * @param fileName name of some File object.
+   * @param version version of the file system from a Snapshot.
+   * @return File object named fileName back then, or null.
+   */
+  File getFile(String fileName, long version) {
+    return this.tableAsOf(version).get(fileName);
   }
 
   /**
@@ -130,10 +672,26 @@ public class Directory extends File {
    * @param newContents new array of File objects for this Directory.
    */
   public void setContents(File[] newContents) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Directory.prepareChange(this, this.getContentArray());
 
-    // Converting newContents from Array to ArrayList such that new contents
-    // can be added in the future.
-    this.contents = new ArrayList<File>(Arrays.asList(newContents));
+      // Indexing newContents by name such that new contents can be added in
+      // the future.
+      FileTable table = FileTable.EMPTY;
+      for (File file : newContents) {
+        table = table.put(file.getName(), file);
+      }
+      this.lock.lock();
+      try {
+        this.setTable(table);
+      } finally {
+        this.lock.unlock();
+      }
+    } finally {
+      disc.unlockChanges();
+    }
   }
 
   /**
@@ -143,12 +701,60 @@ public class Directory extends File {
    * @param file a File object to be added to this Directory.
    */
   public void addFile(File file) {
-    if (this.containsFile(file)) {
-      int index = this.contents.indexOf(file);
-      this.contents.remove(index);
+    this.putFile(file, -1);
+  }
+
+  /**
+   * Puts file back into this directory where a file it once held was listed,
+   * as given by order. If file already exists in this directory, replaces the
+   * old file with the new one. Used to undo changes, so that undoing them
+   * keeps the order files are listed in.
+   */
+  void restoreFile(File file, long order) {
+    this.putFile(file, order);
+  }
+
+  /**
+   * Adds file to this directory, at order if it is not negative, otherwise
+   * after every other file.
+   */
+  private void putFile(File file, long order) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Journal journal = disc.getJournal();
+      if (journal != null) {
+        journal.recordAdd(file, this);
+        if (order >= 0) {
+          journal.recordRestoredOrder();
+        }
+      }
+      Directory.prepareChange(this, file.getName());
+
+      this.lock.lock();
+      try {
+        // Any old file is replaced, and the new one goes to the end unless
+        // it is being put back.
+        File old = this.table().get(file.getName());
+        long oldOrder = this.table().orderOf(file.getName());
+        if (old != null) {
+          disc.invalidatePath(old);
+        }
+        long before = this.getStamp();
+        if (order >= 0) {
+          this.setTable(this.table().put(file.getName(), file, order));
+        } else {
+          this.setTable(this.table().put(file.getName(), file));
+        }
+        file.setParent(this);
+        UndoHistory.record(new Change.Added(this, file, old, oldOrder, before,
+            this.getStamp()));
+      } finally {
+        this.lock.unlock();
+      }
+    } finally {
+      disc.unlockChanges();
     }
-    this.contents.add(file);
-    file.setParent(this);
   }
 
   /**
@@ -157,7 +763,7 @@ public class Directory extends File {
    * @return true if this Directory has no contents, otherwise false.
    */
   public boolean isEmpty() {
-    return this.contents.size() == 0;
+    return this.tableAsOf(Long.MAX_VALUE).size() == 0;
   }
 
   /**
@@ -167,7 +773,8 @@ public class Directory extends File {
    * @return true if this directory contains the specified File object.
    */
   public boolean containsFile(File file) {
-    return this.contents.contains(file);
+    File stored = this.getFile(file.getName());
+    return stored != null && stored.equals(file);
   }
 
   /**
@@ -177,7 +784,7 @@ public class Directory extends File {
    * @return true if this directory contains the specified File object.
    */
   public boolean contains(String fileName) {
-    return Arrays.asList(this.getContentArray()).contains(fileName);
+    return this.tableAsOf(Long.MAX_VALUE).get(fileName) != null;
   }
 
   /**
@@ -186,20 +793,95 @@ public class Directory extends File {
    * @param file some File object to be deleted.
    */
   public void deleteFile(File file) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      if (this.contains(file.getName())) {
+        Journal journal = disc.getJournal();
+        if (journal != null) {
+          journal.recordDelete(file);
+        }
+        Directory.prepareChange(this, file.getName());
 
-    if (!this.isEmpty()) {
-      // Retrieving the index of file in the contents of this directory.
-      int fileIndex =
-          Arrays.asList(this.getContentArray()).indexOf(file.getName());
+        this.lock.lock();
+        try {
+          disc.invalidatePath(file);
+          File removed = this.table().get(file.getName());
+          long order = this.table().orderOf(file.getName());
+          long before = this.getStamp();
+          this.setTable(this.table().remove(file.getName()));
+          UndoHistory.record(new Change.Deleted(this, removed, order, before,
+              this.getStamp()));
+        } finally {
+          this.lock.unlock();
+        }
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
 
-      // Removing file from contents by setting it to null.
-      ArrayList<File> oldContents = this.contents;
-      oldContents.remove(fileIndex);
+  /**
+   * Returns whether or not file itself is stored within this directory, without
+   * reading in or copying over any contents.
+   */
+  boolean holds(File file) {
+    return this.table().get(file.getName()) == file;
+  }
 
-      // Giving this directory new contents where the specified file is excluded
-      // from.
-      File[] newContents = oldContents.toArray(new File[oldContents.size()]);
-      this.setContents(newContents);
+  /**
+   * Returns the inodes that checkpoints gave to the files this directory
+   * shares, to be given more. Requires the change lock.
+   */
+  SharedInodes sharedInodes() {
+    if (this.sharedInodes == null) {
+      this.sharedInodes = new SharedInodes(this.getInode());
+    }
+    return this.sharedInodes;
+  }
+
+  /**
+   * Returns the directory this directory is a copy of if its contents have not
+   * been copied over yet, otherwise null.
+   */
+  Directory getCopiedFrom() {
+    return this.copiedFrom;
+  }
+
+  /**
+   * Renames file to newName, re-indexing it under its new name if it is stored
+   * within this directory, where it keeps its place in the order files are
+   * listed in. Any other file stored under newName is replaced,
+   * as mv replaces it. Requires the change lock, and this directory to have
+   * been prepared with prepareChange().
+   */
+  void renameFile(File file, String newName) {
+    this.lock.lock();
+    try {
+      // Paths leading to or through file are about to change.
+      FileSystem disc = FileSystem.getInstance();
+      disc.invalidatePath(file);
+      String oldName = file.getName();
+      boolean stored = this.table().get(oldName) == file;
+      file.setName(newName);
+      if (stored) {
+        File replaced = this.table().get(newName);
+        if (replaced != null && replaced != file) {
+          disc.invalidatePath(replaced);
+        }
+        long order = this.table().orderOf(oldName);
+        long replacedOrder = this.table().orderOf(newName);
+        long before = this.getStamp();
+        this.setTable(this.table().remove(oldName).put(newName, file, order));
+        UndoHistory.record(new Change.Renamed(this, file, oldName, newName,
+            (replaced != file) ? replaced : null, replacedOrder, before,
+            this.getStamp()));
+      } else {
+        UndoHistory.record(new Change.Renamed(null, file, oldName, newName,
+            null, -1, 0, 0));
+      }
+    } finally {
+      this.lock.unlock();
     }
   }
 
@@ -1,6 +1,7 @@
 package sys_files;
 
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import exceptions.InvalidFileNameException;
 import exceptions.InvalidPathException;
@@ -10,8 +11,9 @@ import exceptions.InvalidPathException;
  */
 public abstract class File {
 
-  private String name; // File name.
+  private volatile String name; // File name.
   private FileSystem disc; // FileSystem instance.
+  private final long inode; // Number that uniquely identifies this file.
 
   // Invalid special characters.
   private final static String SPECIAL_CHARS = " `!#&*()-+={}[]|;:\\'\"<>,?";
@@ -19,7 +21,20 @@ public abstract class File {
   private final static String ROOT = "/";
 
   // Parent of this file; root has no parent (equivalent to null).
-  private File parent;
+  private volatile File parent;
+
+  // Bumped whenever a directory with contents is renamed or moved, since that
+  // may change the paths of the files underneath it.
+  private final static AtomicLong pathGeneration = new AtomicLong();
+  // Path of root, which never changes.
+  private final static CachedPath ROOT_PATH =
+      new CachedPath(ROOT, null, null, null);
+  // Path of this file, if already built.
+  private volatile CachedPath cachedPath;
+  // Tells apart what this file held at different times: every change to what
+  // it holds gives it a new stamp, and undoing a change gives the old stamp
+  // back. Only used under the change lock.
+  private long stamp = 0;
 
   // File attributes.
   private static HashMap<String, Boolean> attributes =
@@ -35,6 +50,7 @@ public abstract class File {
   protected File() {
     this.name = "";
     this.parent = null;
+    this.inode = FileSystem.ROOT_INODE;
   }
 
   /**
@@ -49,6 +65,7 @@ public abstract class File {
       InvalidPathException {
 
     this.createFileSystem(); // Creating a FileSystem instance.
+    this.inode = disc.allocateInode(this);
 
     // Converting path to absolute, checking if pathName is a path first.
     String absPathName = pathName;
@@ -72,12 +89,43 @@ public abstract class File {
       InvalidPathException {
 
     this.createFileSystem(); // Creating a FileSystem instance.
+    this.inode = disc.allocateInode(this);
 
     // Converting path to absolute.
     String absPathName = disc.toAbsolutePath(path);
     this.createFile(fileName, absPathName); // Creating a File object.
   }
 
+  /**
+   * Initializes new File with the same name as original, with parent as its
+   * parent.
+   * 
+   * @param original File object to be copied.
+   * @param parent parent for the copy.
+   */
+  protected File(File original, File parent) {
+    this.createFileSystem(); // Creating a FileSystem instance.
+    this.inode = disc.allocateInode(this);
+    this.name = original.name;
+    this.parent = parent;
+  }
+
+  /**
+   * Initializes new File with the specified name, parent and inode, for files
+   * that are read back in rather than created. The name is not validated.
+   * 
+   * @param name name for this File object.
+   * @param parent parent for this File object, or null for a root.
+   * @param inode inode for this File object.
+   */
+  protected File(String name, File parent, long inode) {
+    this.createFileSystem(); // Creating a FileSystem instance.
+    this.inode = inode;
+    disc.registerInode(this, inode);
+    this.name = name;
+    this.parent = parent;
+  }
+
   /**
    * Initializes a FileSystem instance.
    */
@@ -164,13 +212,31 @@ public abstract class File {
    */
   @Override
   public boolean equals(Object other) {
-    // Just paths are compared since no two files can have the same path.
+    // Just inodes are compared since no two files can have the same inode.
     if (other != null && other instanceof File) {
-      return this.getPath().equals(((File) other).getPath());
+      return this.inode == ((File) other).inode;
     }
     return false;
   }
 
+  /**
+   * Returns the hash code of this File object.
+   */
+  @Override
+  public int hashCode() {
+    return Long.hashCode(this.inode);
+  }
+
+  /**
+   * Returns the inode of this file, a number that uniquely identifies it
+   * within the file system.
+   * 
+   * @return inode number of this File object.
+   */
+  public long getInode() {
+    return this.inode;
+  }
+
   /**
    * Returns the name of this file.
    * 
@@ -186,7 +252,34 @@ public abstract class File {
    * @param newName new name for this File object.
    */
   public void renameTo(String newName) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Journal journal = disc.getJournal();
+      if (journal != null) {
+        journal.recordRename(this, newName);
+      }
+      if (this.parent instanceof Directory) {
+        // Pending copies of the parent must still see the old name, and the
+        // parent's index of its contents is kept up to date.
+        Directory parentDir = (Directory) this.parent;
+        Directory.prepareChange(parentDir, this.name, newName);
+        parentDir.renameFile(this, newName);
+      } else {
+        this.setName(newName);
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Sets the name of this file to newName, without telling its parent.
+   * Requires the change lock.
+   */
+  void setName(String newName) {
     this.name = newName;
+    this.pathChanged();
   }
 
   /**
@@ -206,6 +299,18 @@ public abstract class File {
    */
   public void setParent(File newParent) {
     this.parent = newParent;
+    this.pathChanged();
+  }
+
+  /**
+   * Forgets the cached path of this file. The files underneath it find out
+   * once they see it has a new one.
+   */
+  private void pathChanged() {
+    this.cachedPath = null;
+    if (this instanceof Directory && !this.isEmpty()) {
+      pathGeneration.incrementAndGet();
+    }
   }
 
   /**
@@ -214,17 +319,46 @@ public abstract class File {
    * @return the path to this File object.
    */
   public String getPath() {
+    return this.currentPath().path;
+  }
+
+  /**
+   * Returns the cached path of this file. A path checked since the last time
+   * a directory with contents was renamed or moved is used as it is.
+   * Otherwise the files on the way to this one are checked once, and the path
+   * is only rebuilt if it was built from a name, parent, or parent path that
+   * has since changed, so renaming or moving a file leaves the paths cached
+   * outside of it alone.
+   */
+  private CachedPath currentPath() {
     // If the parent is root.
     if (FileSystem.equalsToRoot(this)) {
-      return ROOT;
-    } else {
+      return ROOT_PATH;
+    }
+    long generation = pathGeneration.get();
+    File parentFile = this.parent;
+    String fileName = this.name;
+    CachedPath cached = this.cachedPath;
+    if (cached != null && cached.checked == generation
+        && cached.parent == parentFile && cached.name == fileName) {
+      return cached;
+    }
+    CachedPath parentPath = parentFile.currentPath();
+    if (cached == null || cached.parentPath != parentPath
+        || cached.parent != parentFile || cached.name != fileName) {
       // To avoid double forwards slashes. Checking if the parent file is the
       // root file.
-      if (!(ROOT.equals(getParentPath()))) {
-        return this.getParentPath() + "/" + this.name;
+      String path;
+      if (parentPath != ROOT_PATH) {
+        path = parentPath.path + "/" + fileName;
+      } else {
+        path = ROOT + fileName;
       }
-      return this.getParentPath() + this.name;
+      cached = new CachedPath(path, parentPath, parentFile, fileName);
+      this.cachedPath = cached;
     }
+    cached.checked = generation;
+    return cached;
   }
 
   /**
@@ -234,10 +368,11 @@ public abstract class File {
    */
   public String getParentPath() {
     // Checking if the parent file is the root file.
-    if (FileSystem.equalsToRoot(this.parent)) {
+    File parentFile = this.parent;
+    if (FileSystem.equalsToRoot(parentFile)) {
       return "/";
     } else {
-      return this.parent.getPath();
+      return parentFile.getPath();
     }
   }
 
@@ -308,6 +443,16 @@ public abstract class File {
    */
   public abstract String getFileType();
 
+  /**
+   * Returns a copy of this file, placed in the same parent directory but not
+   * yet added to it.
+   * 
+   * Requires a subclass.
+   * 
+   * @return a copy of this File object.
+   */
+  public abstract File copy();
+
   /**
    * Returns the contents of this file.
    * 
@@ -326,4 +471,56 @@ public abstract class File {
    */
   public abstract boolean isEmpty();
 
+  /**
+   * Drops what this file held as of versions of the file system older than
+   * oldest, other than what it held as of oldest itself, since no snapshot
+   * can still read those.
+   * 
+   * @param oldest oldest version of the file system that is still being read.
+   * @return true if this file is left with more than one version.
+   */
+  boolean pruneVersions(long oldest) {
+    return false;
+  }
+
+  /**
+   * Returns the stamp of what this file holds now. Requires the change lock.
+   */
+  long getStamp() {
+    return this.stamp;
+  }
+
+  /**
+   * Sets the stamp of what this file holds now. Requires the change lock.
+   */
+  void setStamp(long stamp) {
+    this.stamp = stamp;
+  }
+
+  /**
+   * A path together with what it was built from, so that another thread
+   * renaming or moving the file while the path is being built cannot leave a
+   * stale path behind.
+   */
+  private static class CachedPath {
+
+    private final String path; // Path of a file.
+    private final CachedPath parentPath; // Path of the parent it was built on.
+    private final File parent; // Parent the file had.
+    private final String name; // Name the file had.
+    // Path generation the path was last checked in.
+    private volatile long checked = -1;
+
+    /**
+     * Initializes new CachedPath.
+     */
+    CachedPath(String path, CachedPath parentPath, File parent,
+        String name) {
+      this.path = path;
+      this.parentPath = parentPath;
+      this.parent = parent;
+      this.name = name;
+    }
+  }
+
 }
@@ -1,46 +1,123 @@
 package sys_files;
 
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+import exceptions.InvalidFileNameException;
 import exceptions.InvalidPathException;
+import exceptions.ReadOnlyFileException;
 
 /**
  * Provides an interface to a file system and is the factory for objects to
  * store and access files in the file system.
  * 
+ * The file system can be used from many threads at once. Lookups and
+ * listings never lock anything, since directories and text files keep what
+ * they hold in forms that never change and are replaced as a whole. Changes
+ * are made one at a time under the change lock, which keeps the journal in
+ * the order changes were made, and additionally hold the lock of every
+ * directory they change.
+ * 
+ * Every time the change lock is let go of, the file system moves on to a new
+ * version. Commands that read many files take a Snapshot, which reads every
+ * file as of the version the file system was at when it was taken, while
+ * changes carry on.
+ * 
+ * The whole file system can also be saved under a name and rolled back to
+ * later. Saving it takes no time or memory of its own: the saved root is a
+ * copy of the root whose contents are only copied, one directory at a time,
+ * as the directories on the way to each change are about to change.
+ * 
  * @author  
  */
 public class FileSystem {
 
-  private static FileSystem instance; // FileSystem is created only once.
-  private Directory root = new Directory(); // The root directory.
-  private Directory currentDirectory; // Current working directory.
+  private volatile Directory root = new Directory(); // The root directory.
 
   private final static String ROOT = "/"; // Root symbol.
 
-  private int totalDirectories = 0; // Total number of directories stored.
-  private int totalTextFiles = 0; // Total number of text files stored.
+  // Inode of the root directory.
+  final static long ROOT_INODE = 1;
+  private long nextInode = ROOT_INODE + 1; // Next inode to be given out.
+  // Files by inode. Files that are no longer referenced anywhere else are
+  // left for the garbage collector and then dropped from the table. Guards
+  // nextInode as well.
+  private HashMap<Long, InodeReference> inodes =
+      new HashMap<Long, InodeReference>();
+  private ReferenceQueue<File> collected = new ReferenceQueue<File>();
+
+  // Total number of directories stored.
+  private final LongAdder totalDirectories = new LongAdder();
+  // Total number of text files stored.
+  private final LongAdder totalTextFiles = new LongAdder();
+
+  // Held by whichever thread is changing the file system.
+  private final ReentrantLock changes = new ReentrantLock();
+  // Version of the file system new snapshots are taken of.
+  private volatile long visibleVersion = 0;
+  // Version of the file system the changes being made belong to, and the
+  // files that have changed so far. Only used under the change lock.
+  private long changeVersion = 0;
+  private ArrayList<File> changedFiles = new ArrayList<File>();
+  // Last stamp given to what a file holds. Only used under the change lock.
+  private long lastStamp = 0;
+  // Number of open snapshots of each version. Guards visibleVersion changes
+  // and multiVersioned as well.
+  private final TreeMap<Long, Integer> snapshots = new TreeMap<Long, Integer>();
+  // Files that still hold more than one version.
+  private final Set<File> multiVersioned =
+      Collections.newSetFromMap(new IdentityHashMap<File, Boolean>());
+
+  // Maximum number of absolute paths remembered by the path cache.
+  private final static int PATH_CACHE_CAPACITY = 4096;
+  // Absolute paths that have already been followed.
+  private final PathCache pathCache = new PathCache(PATH_CACHE_CAPACITY);
+  // Distinct text file contents, if they are being deduplicated.
+  private volatile ContentStore contentStore = new ContentStore();
+  // Journal changes are recorded in, if any.
+  private volatile Journal journal = null;
+  // The whole file system as it was saved under each name, in the order it
+  // was saved. Only used under the change lock.
+  private final LinkedHashMap<String, SavedTree> savedTrees =
+      new LinkedHashMap<String, SavedTree>();
 
   /**
    * Initializes new FileSystem. Private in case someone tries to create a 
    * FileSystem instance.
    */
   private FileSystem() {
-    this.currentDirectory = root;
+    this.inodes.put(ROOT_INODE, new InodeReference(root, this.collected,
+        ROOT_INODE));
+  }
+
+  /**
+   * Holds the FileSystem instance, which is created the first time it is
+   * asked for. Class initialization makes sure only one is ever created, even
+   * when many threads ask for it at once.
+   */
+  private static class Holder {
+    private final static FileSystem INSTANCE = new FileSystem();
   }
 
   /**
-   * Returns an instance of FileSystem. If the there is no instance yet, then
-   * initializes a new FileSystem first.
+   * Returns the FileSystem instance, creating it if there is none yet.
    * 
    * @return FileSystem instance.
    */
   public static FileSystem getInstance() {
-    // Initializes an instance of FileSystem if needed.
-    if (instance == null) {
-      instance = new FileSystem();
-    }
-    return instance;
+    return Holder.INSTANCE;
   }
 
   /**
@@ -51,7 +128,10 @@ public class FileSystem {
     return ("Type:         " + this.getSystemType() + "\n" + "Total files:  "
         + this.numFiles() + "\n" + "\t     Directories("
         + this.numDirectories() + ")" + "\n" + "\t      TextFiles("
-        + this.numTextFiles() + ")");
+        + this.numTextFiles() + ")" + "\n" + "Path cache:   hits("
+        + this.getPathCacheHits() + "), misses(" + this.getPathCacheMisses()
+        + ")" + "\n" + "Text bytes:   logical(" + this.logicalBytes()
+        + "), physical(" + this.physicalBytes() + ")");
   }
 
   /**
@@ -95,32 +175,318 @@ public class FileSystem {
    * Returns the total number of directories stored.
    */
   private int numDirectories() {
-    return this.totalDirectories;
+    return this.totalDirectories.intValue();
   }
 
   /**
    * Returns the total number of text files stored.
    */
   private int numTextFiles() {
-    return this.totalTextFiles;
+    return this.totalTextFiles.intValue();
+  }
+
+  /**
+   * Returns the store that text file contents are deduplicated in.
+   * 
+   * @return ContentStore object of this FileSystem.
+   */
+  public ContentStore getContentStore() {
+    return this.contentStore;
+  }
+
+  /**
+   * Sets whether or not identical text file contents are stored only once.
+   * 
+   * @param deduplicating true if new contents should be deduplicated.
+   */
+  public void setDeduplicating(boolean deduplicating) {
+    this.contentStore.setEnabled(deduplicating);
+  }
+
+  /**
+   * Returns the total number of bytes of text in all text files, as if every
+   * text file stored its own contents.
+   * 
+   * @return logical size of all text file contents.
+   */
+  public long logicalBytes() {
+    return this.measure()[0];
   }
 
   /**
-   * Returns the current working directory.
+   * Returns the number of bytes actually used to store the text of all text
+   * files, where contents shared between files are only counted once.
+   * 
+   * @return physical size of all text file contents.
+   */
+  public long physicalBytes() {
+    return this.measure()[1];
+  }
+
+  /**
+   * Returns the logical and physical size of all text file contents, in that
+   * order.
+   */
+  private long[] measure() {
+    long[] totals = new long[2];
+    this.lockChanges(); // Text files must not change while being measured.
+    try {
+      this.root.measure(totals, new IdentityHashMap<TextBuffer, Boolean>());
+    } finally {
+      this.unlockChanges();
+    }
+    return totals;
+  }
+
+  /**
+   * Waits until no other thread is changing the file system, then keeps any
+   * other thread from doing so until unlockChanges() is called. May be called
+   * again by a thread that already holds the lock.
+   */
+  void lockChanges() {
+    this.changes.lock();
+    if (this.changes.getHoldCount() == 1) {
+      this.changeVersion = this.visibleVersion + 1;
+    }
+  }
+
+  /**
+   * Lets other threads change the file system again, once every call to
+   * lockChanges() by this thread has been matched. Snapshots taken from then
+   * on see every change made under the lock.
+   */
+  void unlockChanges() {
+    if (this.changes.getHoldCount() == 1) {
+      synchronized (this.snapshots) {
+        this.visibleVersion = this.changeVersion;
+        this.dropOldVersions(this.changedFiles);
+      }
+      this.changedFiles.clear();
+    }
+    this.changes.unlock();
+  }
+
+  /**
+   * Returns the version of the file system the changes being made belong to.
+   * Requires the change lock.
+   */
+  long getChangeVersion() {
+    return this.changeVersion;
+  }
+
+  /**
+   * Returns a stamp for what a changed file holds, which no file has had
+   * before. Requires the change lock.
+   */
+  long newStamp() {
+    return ++this.lastStamp;
+  }
+
+  /**
+   * Records that file has been given a new version, so that versions of it
+   * no longer needed can be dropped. Requires the change lock.
+   */
+  void versionAdded(File file) {
+    this.changedFiles.add(file);
+  }
+
+  /**
+   * Returns a snapshot of the file system as it is now. Files read through
+   * the snapshot show what they held at this moment until it is closed.
+   * 
+   * @return a new Snapshot of this FileSystem.
+   */
+  public Snapshot openSnapshot() {
+    synchronized (this.snapshots) {
+      long version = this.visibleVersion;
+      this.snapshots.merge(version, 1, Integer::sum);
+      return new Snapshot(this, version);
+    }
+  }
+
+  /**
+   * Records that a snapshot of version has been closed, dropping versions of
+   * files that only it could still need.
+   */
+  void closeSnapshot(long version) {
+    synchronized (this.snapshots) {
+      long oldest = this.oldestVersionNeeded();
+      if (this.snapshots.merge(version, -1, Integer::sum) == 0) {
+        this.snapshots.remove(version);
+      }
+      if (this.oldestVersionNeeded() != oldest) {
+        this.dropOldVersions(new ArrayList<File>(this.multiVersioned));
+      }
+    }
+  }
+
+  /**
+   * Drops the versions of files that no snapshot can still need, keeping
+   * track of which files are left with more than one. Requires the lock on
+   * the snapshot table.
+   */
+  private void dropOldVersions(ArrayList<File> files) {
+    long oldest = this.oldestVersionNeeded();
+    for (File file : files) {
+      if (file.pruneVersions(oldest)) {
+        this.multiVersioned.add(file);
+      } else {
+        this.multiVersioned.remove(file);
+      }
+    }
+  }
+
+  /**
+   * Returns the oldest version of the file system that is still being read,
+   * either by an open snapshot or by new snapshots. Requires the lock on the
+   * snapshot table.
+   */
+  private long oldestVersionNeeded() {
+    long oldest = this.visibleVersion;
+    if (!this.snapshots.isEmpty()) {
+      oldest = Math.min(oldest, this.snapshots.firstKey());
+    }
+    return oldest;
+  }
+
+  /**
+   * Returns the journal changes to this file system are recorded in.
+   * 
+   * @return Journal object of this FileSystem, or null if there is none.
+   */
+  public Journal getJournal() {
+    return this.journal;
+  }
+
+  /**
+   * Starts recording changes to this file system in journal.
+   */
+  void setJournal(Journal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Gives file a new inode and records it in the inode table.
+   * 
+   * @param file some newly created File object.
+   * @return inode for file.
+   */
+  long allocateInode(File file) {
+    synchronized (this.inodes) {
+      this.purgeInodes();
+      long inode = this.nextInode++;
+      this.inodes.put(inode, new InodeReference(file, this.collected, inode));
+      return inode;
+    }
+  }
+
+  /**
+   * Sets aside a new inode for a file that is about to be created with it.
+   * 
+   * @return inode that has not been given out before.
+   */
+  long reserveInode() {
+    synchronized (this.inodes) {
+      return this.nextInode++;
+    }
+  }
+
+  /**
+   * Records file in the inode table under an inode it was given before, such
+   * as when it is read back in from an image. Inodes handed out from then on
+   * are greater than inode.
+   * 
+   * @param file some File object.
+   * @param inode inode of file.
+   */
+  void registerInode(File file, long inode) {
+    synchronized (this.inodes) {
+      this.purgeInodes();
+      this.nextInode = Math.max(this.nextInode, inode + 1);
+      this.inodes.put(inode, new InodeReference(file, this.collected, inode));
+    }
+  }
+
+  /**
+   * Returns the File object with the specified inode, or null if there is no
+   * such file anymore.
+   * 
+   * @param inode inode of some File object.
+   * @return File object with inode, or null.
+   */
+  public File byInode(long inode) {
+    InodeReference ref;
+    synchronized (this.inodes) {
+      ref = this.inodes.get(inode);
+    }
+    return (ref != null) ? ref.get() : null;
+  }
+
+  /**
+   * Drops inode table entries of files that have been garbage collected.
+   * Requires the lock on the inode table.
+   */
+  private void purgeInodes() {
+    InodeReference ref;
+    while ((ref = (InodeReference) this.collected.poll()) != null) {
+      if (this.inodes.get(ref.inode) == ref) {
+        this.inodes.remove(ref.inode);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of path lookups that were answered by the path cache.
+   * 
+   * @return number of path cache hits.
+   */
+  public long getPathCacheHits() {
+    return this.pathCache.getHits();
+  }
+
+  /**
+   * Returns the number of path lookups that had to follow the path through
+   * the directory tree.
+   * 
+   * @return number of path cache misses.
+   */
+  public long getPathCacheMisses() {
+    return this.pathCache.getMisses();
+  }
+
+  /**
+   * Forgets any cached paths leading to or through file. Must be called
+   * before file is removed, replaced or renamed.
+   * 
+   * @param file some File object whose path is about to change.
+   */
+  public void invalidatePath(File file) {
+    // Only directories can have paths leading through them.
+    if (file instanceof Directory && !file.isEmpty()) {
+      this.pathCache.invalidate(file.getPath());
+    } else {
+      this.pathCache.remove(file.getPath());
+    }
+  }
+
+  /**
+   * Returns the current working directory of the current session. Relative
+   * paths are resolved against it.
    * 
    * @return Directory object representing the current working directory.
    */
   public Directory getCurrentDirectory() {
-    return this.currentDirectory;
+    return Session.current().getCurrentDirectory();
   }
 
   /**
-   * Sets the current working directory to the one specified.
+   * Sets the current working directory of the current session to the one
+   * specified.
    * 
    * @param newDirectory Directory object representing a new working directory.
    */
   public void setCurrentDirectory(Directory newDirectory) {
-    this.currentDirectory = newDirectory;
+    Session.current().setCurrentDirectory(newDirectory);
   }
 
   /**
@@ -129,7 +495,7 @@ public class FileSystem {
    * @return path to the current working directory.
    */
   public String getPath() {
-    return this.currentDirectory.getPath();
+    return this.getCurrentDirectory().getPath();
   }
 
   /**
@@ -145,27 +511,27 @@ public class FileSystem {
 
   /**
    * Returns the parent path from path. The parent path excludes the last
-   * element in path.
+   * element in path. Relative paths are taken from the current working
+   * directory.
    * 
    * @param path some path.
    * @return a parent path of path.
    */
   public String retrieveParentPath(String path) {
-    // Retrieving parent path.
-    String[] inParts = Builder.pathToArray(path);
-    String[] parentPath = Arrays.copyOfRange(inParts, 0, inParts.length - 1);
-    String pp = Builder.rebuildPath(parentPath);
-
-    // Checking if path starts at root.
-    if (path.startsWith(ROOT)) {
-      pp = this.getPath() + pp;
-    }
+    try {
+      // Using the directory that would contain the last element in path.
+      return this.resolveParent(path, this.getCurrentDirectory()).getPath();
+    } catch (InvalidPathException ex) {
+      // The parent does not exist, so it is rebuilt as is.
+      String[] inParts = Builder.pathToArray(path);
+      String[] parentPath = Arrays.copyOfRange(inParts, 0, inParts.length - 1);
+      String pp = Builder.rebuildPath(parentPath);
 
-    // Checking if the parent path is equivalent to root.
-    if ("".equals(pp)) {
-      return ROOT;
-    } else {
-      return pp;
+      // Checking if path starts at the current directory.
+      if (!path.startsWith(ROOT) && !ROOT.equals(this.getPath())) {
+        pp = this.getPath() + pp;
+      }
+      return "".equals(pp) ? ROOT : pp;
     }
   }
 
@@ -187,6 +553,7 @@ public class FileSystem {
 
   /**
    * Transforms the specified path into an absolute path and returns the result.
+   * The last element in pathName does not need to exist.
    * 
    * @param pathName some path.
    * @return absolute path representation of pathName.
@@ -194,83 +561,160 @@ public class FileSystem {
    */
   public String toAbsolutePath(String pathName) throws InvalidPathException {
 
-    // Since the current directory will be continuously changed while validating
-    // / pathName, storing a backup of it.
-    Directory backup = this.getCurrentDirectory();
-
     // No need to convert a root symbol to absolute path.
     if (ROOT.equals(pathName)) {
       return pathName;
     }
 
-    // Checking if pathName starts at root.
-    if (pathName.indexOf(ROOT) == 0) {
-      this.setCurrentDirectory(root);
+    // Resolving everything but the last element, which is appended as is.
+    String[] inParts = Builder.pathToArray(pathName);
+    Directory parent =
+        this.resolveParent(pathName, this.getCurrentDirectory());
+    String last = inParts.length > 0 ? inParts[inParts.length - 1] : ".";
+    if (".".equals(last) || "..".equals(last)) {
+      return this.step(parent, last).getPath();
     }
 
-    try {
-      // Transforming pathName into an absolute path by changing the current
-      // directory according to each individual element in pathName.
-      String absPath = this.followPath(pathName);
-      // Changing current directory back to what it was before the check.
-      this.setCurrentDirectory(backup);
-      return absPath;
-    } catch (InvalidPathException ex) {
-      this.setCurrentDirectory(backup);
-      throw ex;
+    // Checking if a separator is required.
+    if (parent.getPath().endsWith(ROOT)) {
+      return parent.getPath() + last;
     }
+    return parent.getPath() + ROOT + last;
   }
 
   /**
-   * Follows path using current directory.
+   * Returns the File object associated with the specified path, where relative
+   * paths are resolved against the current working directory.
+   * 
+   * @param pathName a path to some File object.
+   * @return the File object associated with pathName.
+   * @throws InvalidPathException if there is no File object at pathName.
    */
-  private String followPath(String path) throws InvalidPathException {
-    String[] inParts = Builder.pathToArray(path);
-    String toAdd = "";
+  public File resolve(String pathName) throws InvalidPathException {
+    return this.resolve(pathName, this.getCurrentDirectory());
+  }
 
-    // Iterating through every directory in path and setting it as the current
-    // directory.
-    for (int i = 0; i < inParts.length; i++) {
-      // Checking if p is a parent or a normal directory.
-      if ("..".equals(inParts[i])) {
-        Directory parent = (Directory) this.currentDirectory.getParentFile();
-        if (parent != null) {
-          this.setCurrentDirectory(parent);
-        }
-      } else if (!".".equals(inParts[i])) {
-        if (i != inParts.length - 1) {
-          this.setTo(inParts[i]);
-        } else {
-          toAdd = inParts[i];
-        }
-      }
+  /**
+   * Returns the File object associated with the specified path, where relative
+   * paths are resolved against cwd. Unlike changing directories, resolving a
+   * path does not modify the state of this FileSystem.
+   * 
+   * @param pathName a path to some File object.
+   * @param cwd directory that relative paths start from.
+   * @return the File object associated with pathName.
+   * @throws InvalidPathException if there is no File object at pathName.
+   */
+  public File resolve(String pathName, Directory cwd)
+      throws InvalidPathException {
+    String[] inParts = Builder.pathToArray(pathName);
+
+    // Checking if pathName has already been followed.
+    String key = this.cacheKey(pathName, inParts, inParts.length, cwd);
+    long stamp = this.pathCache.stamp();
+    File found = (key != null) ? this.pathCache.get(key) : null;
+    if (found != null) {
+      return found;
     }
-    // Checking if a separator is required.
-    if (this.getPath().endsWith(ROOT)) {
-      return this.getPath() + toAdd;
+
+    // An empty path refers to the directory it starts from.
+    Directory parent = this.resolveParent(pathName, cwd);
+    if (inParts.length == 0) {
+      found = parent;
+    } else {
+      found = this.step(parent, inParts[inParts.length - 1]);
+    }
+    if (key != null) {
+      this.pathCache.put(key, found, stamp);
     }
-    return this.getPath() + ROOT + toAdd;
+    return found;
   }
 
   /**
-   * Sets current directory to the directory specified by fileName.
+   * Returns the Directory object that contains the last element of pathName,
+   * where relative paths are resolved against cwd.
+   * 
+   * @param pathName a path to some File object.
+   * @param cwd directory that relative paths start from.
+   * @return Directory object containing the last element of pathName.
+   * @throws InvalidPathException if the parent of pathName does not exist.
    */
-  private void setTo(String fileName) throws InvalidPathException {
-    // Getting the index of p in contents of the current directory.
-    String[] contents = this.currentDirectory.getContentArray();
-    int index = Arrays.asList(contents).indexOf(fileName);
+  public Directory resolveParent(String pathName, Directory cwd)
+      throws InvalidPathException {
+    String[] inParts = Builder.pathToArray(pathName);
+
+    // Checking if the parent has already been followed.
+    String key = this.cacheKey(pathName, inParts, inParts.length - 1, cwd);
+    long stamp = this.pathCache.stamp();
+    File found = (key != null) ? this.pathCache.get(key) : null;
+    if (found instanceof Directory) {
+      return (Directory) found;
+    } else if (found != null) {
+      throw new InvalidPathException("Cannot set directory to a file.");
+    }
+
+    // Checking if pathName starts at root.
+    Directory current = pathName.startsWith(ROOT) ? root : cwd;
 
-    // Checking if fileName exists.
-    if (index != -1) {
-      File next = this.currentDirectory.getContents()[index];
+    // Following every element in pathName but the last one, each of which
+    // must be a directory.
+    for (int i = 0; i < inParts.length - 1; i++) {
+      File next = this.step(current, inParts[i]);
       if (next instanceof Directory) {
-        this.setCurrentDirectory((Directory) next);
+        current = (Directory) next;
       } else {
         throw new InvalidPathException("Cannot set directory to a file.");
       }
-    } else {
+    }
+    if (key != null) {
+      this.pathCache.put(key, current, stamp);
+    }
+    return current;
+  }
+
+  /**
+   * Returns the absolute path made up of the first count elements of inParts
+   * for use as a path cache key, or null if the path should not be cached.
+   */
+  private String cacheKey(String pathName, String[] inParts, int count,
+      Directory cwd) {
+    // Paths that step back out of a directory are cheap to follow from where
+    // they start, and only following them finds out if each step is valid.
+    for (int i = 0; i < count; i++) {
+      if ("..".equals(inParts[i])) {
+        return null;
+      }
+    }
+
+    // Relative paths are keyed by the path of the directory they start from.
+    StringBuilder key = new StringBuilder();
+    if (!pathName.startsWith(ROOT) && !FileSystem.equalsToRoot(cwd)) {
+      key.append(cwd.getPath());
+    }
+    for (int i = 0; i < count; i++) {
+      if (!".".equals(inParts[i])) {
+        key.append(ROOT).append(inParts[i]);
+      }
+    }
+    return key.length() == 0 ? ROOT : key.toString();
+  }
+
+  /**
+   * Returns the File object that fileName refers to from within dir.
+   */
+  private File step(Directory dir, String fileName)
+      throws InvalidPathException {
+    // Checking if fileName is a parent, the same, or a normal directory.
+    if ("..".equals(fileName)) {
+      File parent = dir.getParentFile();
+      return parent != null ? parent : dir;
+    } else if (".".equals(fileName)) {
+      return dir;
+    }
+    File next = dir.getFile(fileName);
+    if (next == null) {
       throw new InvalidPathException(fileName + ": Directory does not exist.");
     }
+    return next;
   }
 
   /**
@@ -282,46 +726,12 @@ public class FileSystem {
    */
   public File fileAt(String path) {
     try {
-      // Converting path to absolute.
-      String absPath = this.toAbsolutePath(path);
-      if (ROOT.equals(absPath)) { // No need to search for root file.
-        return root;
-      } else {
-        return this.getFile(Builder.pathToArray(absPath), root);
-      }
+      return this.resolve(path);
     } catch (InvalidPathException ex) { // If file does not exist.
       return null;
     }
   }
 
-  /**
-   * Returns the File object associated with the specified path; starting the
-   * search from dir.
-   */
-  private File getFile(String[] path, Directory dir) {
-
-    // Do the search if path is not empty, otherwise return null.
-    if (path.length > 0) {
-      // Iterates through every file in dir and compare them to path.
-      for (int i = 0; i < dir.getContents().length; i++) {
-        // First element from path is taken and compared.
-        if (path[0].equals(dir.getContentArray()[i])) {
-          // If something matches, stop the search once reaching the end of
-          // path, otherwise recursively check for the next element in path.
-          if (path.length == 1) {
-            return dir.getContents()[i];
-          } else {
-            // New path where the previous element is excluded.
-            String[] newPath = Arrays.copyOfRange(path, 1, path.length);
-            // Continue checking, now starting in the matching child directory.
-            return this.getFile(newPath, (Directory) dir.getContents()[i]);
-          }
-        }
-      }
-    }
-    return null;
-  }
-
   /**
    * Deletes the file specified by path. If only the name of the file is given,
    * deletes that file from the current directory. The file is only deleted if
@@ -331,11 +741,11 @@ public class FileSystem {
    */
   public void deleteFile(String pathName) {
 
-    // Only deleting if the path actually exists.
-    if (this.contains(pathName)) {
+    // Retrieving the File object to be deleted.
+    File file = this.fileAt(pathName);
 
-      // Retrieving the File object to be deleted.
-      File file = this.fileAt(pathName);
+    // Only deleting if the path actually exists.
+    if (file != null) {
 
       // Retrieving the parent of that File object.
       Directory parent = (Directory) file.getParentFile();
@@ -352,7 +762,7 @@ public class FileSystem {
    *         otherwise false.
    */
   public boolean isEmpty() {
-    return (this.totalDirectories + this.totalTextFiles) == 0;
+    return (this.totalDirectories.sum() + this.totalTextFiles.sum()) == 0;
   }
 
   /**
@@ -361,13 +771,18 @@ public class FileSystem {
    * @param file some File object.
    */
   public void addFile(File file) {
-    this.currentDirectory.addFile(file);
+    this.getCurrentDirectory().addFile(file);
+    this.countAdded(file);
+  }
 
-    // Accounting for the newly added file.
+  /**
+   * Accounts for file having been added.
+   */
+  private void countAdded(File file) {
     if (file instanceof Directory) {
-      this.totalDirectories++;
+      this.totalDirectories.increment();
     } else if (file instanceof TextFile) {
-      this.totalTextFiles++;
+      this.totalTextFiles.increment();
     }
   }
 
@@ -379,40 +794,329 @@ public class FileSystem {
    * @param path represents the location to where the specified File object
    *        should be added.
    * @throws InvalidPathException if path is not a valid path.
+   * @throws ReadOnlyFileException if the directory at path is read-only.
    */
-  public void addFile(File file, String path) throws InvalidPathException {
-
-    // Checking if the specified path exists.
-    if (this.contains(path)) {
+  public void addFile(File file, String path)
+      throws InvalidPathException, ReadOnlyFileException {
 
-      // Converting path to absolute path.
-      String absPath = this.toAbsolutePath(path);
+    // Retrieving the parent of the file from path.
+    File found = this.fileAt(path);
 
-      // Retrieving the parent of the file from path.
-      Directory parent = (Directory) this.fileAt(absPath);
+    // Checking if the specified path exists.
+    if (found instanceof Directory) {
+      Directory parent = (Directory) found;
+      if (parent.isReadOnly()) {
+        throw new ReadOnlyFileException(parent.getPath());
+      }
 
       // Adding the file.
       parent.addFile(file);
-
-      // Accounting for the newly added file.
-      if (file instanceof Directory) {
-        this.totalDirectories++;
-      } else if (file instanceof TextFile) {
-        this.totalTextFiles++;
-      }
+      this.countAdded(file);
     } else {
       throw new InvalidPathException("The path does not exist:\n" + path);
     }
   }
 
   /**
-   * Completely clears the file system.
+   * Moves file from the directory it is in to the directory at path. If a
+   * file with the same name already exists there, replaces the old file. No
+   * other thread can see file in both directories or in neither of them.
+   * 
+   * @param file some File object stored within a directory.
+   * @param path represents the location to where the specified File object
+   *        should be moved.
+   * @throws InvalidPathException if path is not a valid path.
+   * @throws ReadOnlyFileException if either directory is read-only.
+   */
+  public void moveFile(File file, String path)
+      throws InvalidPathException, ReadOnlyFileException {
+    this.moveFile(file, path, file.getName());
+  }
+
+  /**
+   * Moves file from the directory it is in to the directory at path, renaming
+   * it to newName on the way. If a file named newName already exists there,
+   * replaces the old file. Other files in the directory file is moved out of
+   * are left alone, whatever their names. No other thread can see file in
+   * both directories or in neither of them.
+   * 
+   * @param file some File object stored within a directory.
+   * @param path represents the location to where the specified File object
+   *        should be moved.
+   * @param newName name for file once it is moved.
+   * @throws InvalidPathException if path is not a valid path.
+   * @throws ReadOnlyFileException if either directory is read-only.
+   */
+  public void moveFile(File file, String path, String newName)
+      throws InvalidPathException, ReadOnlyFileException {
+    this.lockChanges();
+    try {
+      File found = this.fileAt(path);
+      if (!(found instanceof Directory)) {
+        throw new InvalidPathException("The path does not exist:\n" + path);
+      }
+      Directory from = (Directory) file.getParentFile();
+      Directory to = (Directory) found;
+      if (from.isReadOnly() || to.isReadOnly()) {
+        throw new ReadOnlyFileException(
+            (from.isReadOnly() ? from : to).getPath());
+      }
+
+      // Both directories are locked, parent before child, for the whole move.
+      Directory.prepareChange(from, file.getName(), newName);
+      Directory.prepareChange(to, newName);
+      Directory.lockInOrder(from, to);
+      try {
+        from.deleteFile(file);
+        // Renamed only once it is out of from, where another file may
+        // already be named newName.
+        if (!newName.equals(file.getName())) {
+          file.renameTo(newName);
+        }
+        to.addFile(file);
+      } finally {
+        Directory.unlockBoth(from, to);
+      }
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Shows the host directory at hostPath as a new read-only directory at
+   * pathName. Nothing is read from the host until it is used.
+   * 
+   * @param hostPath path of a directory outside of the file system.
+   * @param pathName path or name for the new directory.
+   * @throws InvalidFileNameException if pathName is an invalid name.
+   * @throws InvalidPathException if pathName is a path that is invalid.
+   * @throws ReadOnlyFileException if pathName is inside a read-only directory.
+   */
+  public void mount(String hostPath, String pathName)
+      throws InvalidFileNameException, InvalidPathException,
+      ReadOnlyFileException {
+    MountedDirectory mounted =
+        new MountedDirectory(pathName, Paths.get(hostPath));
+    this.addFile(mounted, mounted.getParentPath());
+  }
+
+  /**
+   * Writes an image of the whole file system to the host file at hostPath.
+   * 
+   * @param hostPath path of a file outside of the file system.
+   * @throws IOException if the image cannot be written.
+   */
+  public void saveImage(String hostPath) throws IOException {
+    this.lockChanges(); // The image is of the file system at one moment.
+    try {
+      FileSystemImage.save(this.root, Paths.get(hostPath));
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Replaces the whole file system with the image stored in the host file at
+   * hostPath. The image is mapped into memory and files are only created from
+   * it once they are used. The current directory is set to the new root.
+   * 
+   * @param hostPath path of a file outside of the file system.
+   * @throws IOException if the image cannot be read.
+   */
+  public void loadImage(String hostPath) throws IOException {
+    FileSystemImage image = FileSystemImage.open(Paths.get(hostPath));
+    this.lockChanges();
+    try {
+      // The journal cannot describe the switch, so it starts over from here.
+      if (this.journal != null) {
+        this.journal.recordReset();
+      }
+      this.loadImage(image);
+
+      if (this.journal != null) {
+        this.journal.checkpoint();
+      }
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Replaces the whole file system with image.
+   */
+  void loadImage(FileSystemImage image) {
+    this.lockChanges();
+    try {
+      // Files still in the image keep their inodes once they are read in.
+      synchronized (this.inodes) {
+        this.nextInode = Math.max(this.nextInode, image.getNextInode());
+      }
+      this.root = image.getRoot();
+      // Cleared only once the old root can no longer be reached.
+      this.pathCache.clear();
+      Session.resetAll(); // Every session starts over in the new root.
+      this.totalDirectories.reset();
+      this.totalDirectories.add(image.numDirectories());
+      this.totalTextFiles.reset();
+      this.totalTextFiles.add(image.numTextFiles());
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Saves the whole file system as it is now under name, so that it can be
+   * rolled back to later. Replaces whatever was saved under name before.
+   * Nothing is copied until files change.
+   * 
+   * @param name name to save the file system under.
+   */
+  public void saveTree(String name) {
+    this.lockChanges();
+    try {
+      SavedTree saved = new SavedTree(this.root.copy(),
+          this.totalDirectories.sum(), this.totalTextFiles.sum());
+      this.savedTrees.remove(name); // Moving name to the end of the list.
+      this.savedTrees.put(name, saved);
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Returns the names the file system has been saved under, in the order it
+   * was saved under them.
+   * 
+   * @return array of names given to saveTree().
+   */
+  public String[] getSavedTreeNames() {
+    this.lockChanges();
+    try {
+      return this.savedTrees.keySet().toArray(new String[0]);
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Returns whether or not the file system has been saved under name.
+   * 
+   * @param name some name.
+   * @return true if the file system can be rolled back to name.
+   */
+  public boolean hasSavedTree(String name) {
+    this.lockChanges();
+    try {
+      return this.savedTrees.containsKey(name);
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Replaces the whole file system with the one saved under name. What was
+   * saved is kept, so the file system can be rolled back to it again. The
+   * current directory of every session is set to the new root.
+   * 
+   * @param name name the file system was saved under.
+   * @return true if the file system was rolled back, or false if nothing has
+   *         been saved under name.
+   * @throws IOException if the journal cannot be brought up to date.
+   */
+  public boolean rollback(String name) throws IOException {
+    this.lockChanges();
+    try {
+      SavedTree saved = this.savedTrees.get(name);
+      if (saved == null) {
+        return false;
+      }
+      // The journal cannot describe the switch, so it starts over from here.
+      if (this.journal != null) {
+        this.journal.recordReset();
+      }
+
+      // The new root is a copy too, so that the saved one never changes.
+      Directory newRoot = new Directory(saved.root);
+      this.registerInode(newRoot, ROOT_INODE);
+      this.root = newRoot;
+      // Cleared only once the old root can no longer be reached.
+      this.pathCache.clear();
+      Session.resetAll(); // Every session starts over in the new root.
+      this.totalDirectories.reset();
+      this.totalDirectories.add(saved.numDirectories);
+      this.totalTextFiles.reset();
+      this.totalTextFiles.add(saved.numTextFiles);
+
+      if (this.journal != null) {
+        this.journal.checkpoint();
+      }
+      return true;
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * Completely clears the file system. Whatever was saved with saveTree() is
+   * kept.
    */
   public void cleanUp() {
-    root = null;
-    this.currentDirectory = null;
-    root = new Directory();
-    this.currentDirectory = root;
+    this.lockChanges();
+    try {
+      if (this.journal != null) {
+        this.journal.recordReset();
+      }
+      boolean deduplicating = this.contentStore.isEnabled();
+      ContentStore store = new ContentStore();
+      store.setEnabled(deduplicating);
+      this.contentStore = store;
+      Directory newRoot = new Directory();
+      synchronized (this.inodes) {
+        this.inodes.put(ROOT_INODE, new InodeReference(newRoot,
+            this.collected, ROOT_INODE));
+      }
+      root = newRoot;
+      // Cleared only once the old root can no longer be reached.
+      this.pathCache.clear();
+      Session.resetAll(); // Every session starts over in the new root.
+    } finally {
+      this.unlockChanges();
+    }
+  }
+
+  /**
+   * The whole file system as it was saved under some name.
+   */
+  private static class SavedTree {
+
+    private final Directory root; // Copy of the root as it was.
+    private final long numDirectories; // Number of directories back then.
+    private final long numTextFiles; // Number of text files back then.
+
+    /**
+     * Initializes new SavedTree.
+     */
+    SavedTree(Directory root, long numDirectories, long numTextFiles) {
+      this.root = root;
+      this.numDirectories = numDirectories;
+      this.numTextFiles = numTextFiles;
+    }
+  }
+
+  /**
+   * Weak reference to a File object in the inode table.
+   */
+  private static class InodeReference extends WeakReference<File> {
+
+    private final long inode; // Inode of the referenced file.
+
+    /**
+     * Initializes new InodeReference to file with the specified inode.
+     */
+    InodeReference(File file, ReferenceQueue<File> queue, long inode) {
+      super(file, queue);
+      this.inode = inode;
+    }
   }
 
 }
@@ -0,0 +1,571 @@
+package sys_files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Represents a binary image of a whole file system. Images are written in a
+ * single pass over the directory tree and read back through memory mapping,
+ * where files are only created once the directory containing them is used.
+ *
+ * Mounted directories are not part of the file system and are left out.
+ *
+ * An image is laid out as follows:
+ *    header      magic number, version, counts, the offset of each section,
+ *                the last journal record included and the next free inode
+ *    name table  offset of every distinct file name, then the names in UTF-8
+ *    node table  one fixed-size record per file, in breadth-first order so
+ *                that the contents of every directory are stored together
+ *    contents    encoded text of every text file, back to back
+ */
+public class FileSystemImage {
+
+  private final static int MAGIC = 0x4A534849; // "JSHI".
+  private final static int VERSION = 1;
+  private final static int HEADER_SIZE = 64; // Bytes in the header.
+  private final static int RECORD_SIZE = 32; // Bytes in each node record.
+
+  // Types of node record.
+  private final static byte DIRECTORY = 0;
+  private final static byte TEXT_FILE = 1;
+
+  // Size of the pieces the contents section is mapped in.
+  private final static long WINDOW_SIZE = 1L << 30;
+
+  private FileChannel channel; // Open channel to the image.
+  private ByteBuffer meta; // Header, name table and node table.
+  private int numNodes; // Number of node record.
+  private int numNames; // Number of distinct file names.
+  private int numDirectories; // Number of directories, excluding the root.
+  private int numTextFiles; // Number of text files.
+  private int namesOffset; // Offset of the name table.
+  private int nodesOffset; // Offset of the node table.
+  private long contentsOffset; // Offset of the contents section.
+  private long contentsLength; // Length of the contents section.
+  private long sequence; // Last journal record the image includes, if any.
+  private long nextInode; // Smallest inode greater than every stored one.
+
+  // Mapped pieces of the contents section, by window number.
+  private HashMap<Long, ByteBuffer> windows = new HashMap<Long, ByteBuffer>();
+
+  /**
+   * Initializes new FileSystemImage reading from channel.
+   */
+  private FileSystemImage(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Opens the image stored at path. Only the header, name table and node table
+   * are mapped; nothing is read until it is used.
+   *
+   * @param path host path of some image.
+   * @return FileSystemImage object for the image at path.
+   * @throws IOException if the image cannot be read or is not an image.
+   */
+  public static FileSystemImage open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    FileSystemImage image = new FileSystemImage(channel);
+    try {
+      // Checking the header before mapping everything it describes.
+      if (channel.size() < HEADER_SIZE) {
+        throw new IOException(path + ": Not a file system image.");
+      }
+      ByteBuffer header =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException(path + ": Not a file system image.");
+      }
+      image.numNodes = header.getInt(8);
+      image.numNames = header.getInt(12);
+      image.numDirectories = header.getInt(16);
+      image.numTextFiles = header.getInt(20);
+      image.namesOffset = header.getInt(24);
+      image.nodesOffset = header.getInt(28);
+      image.contentsOffset = header.getLong(32);
+      image.contentsLength = header.getLong(40);
+      image.sequence = header.getLong(48);
+      image.nextInode = header.getLong(56);
+      image.meta =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, image.contentsOffset);
+      return image;
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Writes an image of the directory tree under root to path. The image is
+   * written next to path first and then moved over it, so that path always
+   * holds a complete image.
+   *
+   * @param root root Directory object of the tree to be written.
+   * @param path host path to write the image to.
+   * @throws IOException if the image cannot be written.
+   */
+  public static void save(Directory root, Path path) throws IOException {
+    FileSystemImage.write(new FileEntry(root, false), path, 0);
+  }
+
+  /**
+   * Writes an image of the directory tree under root to path as a journal
+   * checkpoint, recording that it includes every journal record up to and
+   * including sequence. Inodes given to files that copies of directories
+   * still share are remembered, for later checkpoints to refer to.
+   *
+   * @param root root Directory object of the tree to be written.
+   * @param path host path to write the image to.
+   * @param sequence sequence number of the last journal record included.
+   * @throws IOException if the image cannot be written.
+   */
+  public static void save(Directory root, Path path, long sequence)
+      throws IOException {
+    FileSystemImage.write(new FileEntry(root, true), path, sequence);
+  }
+
+  /**
+   * Writes an image of the tree of entries under root to path, recording that
+   * it includes every journal record up to and including sequence.
+   *
+   * @param root entry for the root directory of the tree to be written.
+   * @param path host path to write the image to.
+   * @param sequence sequence number of the last journal record included.
+   * @throws IOException if the image cannot be written.
+   */
+  static void write(Entry root, Path path, long sequence) throws IOException {
+    // Numbering every file in breadth-first order, and every distinct name.
+    ArrayList<Entry> nodes = new ArrayList<Entry>();
+    ArrayList<String> names = new ArrayList<String>();
+    HashMap<String, Integer> nameIndices = new HashMap<String, Integer>();
+    nodes.add(root);
+    long nextInode = FileSystem.ROOT_INODE + 1;
+
+    ArrayList<ByteBuffer> records = new ArrayList<ByteBuffer>();
+    long contentsLength = 0;
+    int numDirectories = 0;
+    int numTextFiles = 0;
+
+    for (int i = 0; i < nodes.size(); i++) {
+      Entry node = nodes.get(i);
+      Integer nameIndex = nameIndices.get(node.getName());
+      if (nameIndex == null) {
+        nameIndex = names.size();
+        nameIndices.put(node.getName(), nameIndex);
+        names.add(node.getName());
+      }
+      nextInode = Math.max(nextInode, node.getInode() + 1);
+
+      ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+      record.putLong(0, node.getInode());
+      record.putInt(8, nameIndex);
+      if (node.isDirectory()) {
+        // The contents of this directory are numbered next.
+        Entry[] contents = node.getContents();
+        record.put(12, DIRECTORY);
+        record.putLong(16, nodes.size());
+        record.putLong(24, contents.length);
+        for (Entry e : contents) {
+          nodes.add(e);
+        }
+        numDirectories += (i == 0) ? 0 : 1;
+      } else {
+        TextBuffer text = node.getText();
+        record.put(12, TEXT_FILE);
+        record.put(13, text.getCoder());
+        record.putLong(16, contentsLength);
+        record.putLong(24, text.byteLength());
+        contentsLength += text.byteLength();
+        numTextFiles++;
+      }
+      records.add(record);
+    }
+
+    // Laying out the name table.
+    ArrayList<byte[]> encodedNames = new ArrayList<byte[]>();
+    int namesLength = 0;
+    for (String name : names) {
+      byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+      encodedNames.add(encoded);
+      namesLength += encoded.length;
+    }
+    int namesOffset = HEADER_SIZE;
+    int nodesOffset = namesOffset + 4 * (names.size() + 1) + namesLength;
+    long contentsOffset =
+        (long) nodesOffset + (long) RECORD_SIZE * nodes.size();
+
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putInt(nodes.size())
+          .putInt(names.size()).putInt(numDirectories).putInt(numTextFiles)
+          .putInt(namesOffset).putInt(nodesOffset).putLong(contentsOffset)
+          .putLong(contentsLength).putLong(sequence).putLong(nextInode);
+      header.clear();
+      FileSystemImage.writeFully(out, header);
+
+      // Name offsets, with one extra at the end, followed by the names.
+      ByteBuffer offsets = ByteBuffer.allocate(4 * (names.size() + 1));
+      int offset = 0;
+      for (byte[] encoded : encodedNames) {
+        offsets.putInt(offset);
+        offset += encoded.length;
+      }
+      offsets.putInt(offset).flip();
+      FileSystemImage.writeFully(out, offsets);
+      for (byte[] encoded : encodedNames) {
+        FileSystemImage.writeFully(out, ByteBuffer.wrap(encoded));
+      }
+
+      for (ByteBuffer record : records) {
+        FileSystemImage.writeFully(out, record);
+      }
+      for (Entry node : nodes) {
+        if (!node.isDirectory()) {
+          FileSystemImage.writeFully(out, node.getText().encoded());
+        }
+      }
+      out.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Writes all remaining bytes of buffer to out.
+   */
+  private static void writeFully(FileChannel out, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  /**
+   * Returns the root directory of this image. Its contents are read in when
+   * they are first used.
+   *
+   * @return root Directory object of this image.
+   */
+  public Directory getRoot() {
+    return new ImageDirectory("", null, this.inodeOf(0), this, 0);
+  }
+
+  /**
+   * Returns the sequence number of the last journal record included in this
+   * image, or 0 if it was not written as a journal checkpoint.
+   *
+   * @return sequence number of the last included journal record.
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * Returns the smallest inode that is greater than the inode of every file in
+   * this image, whether or not that file has been read in yet.
+   *
+   * @return next inode that is free to be given out.
+   */
+  public long getNextInode() {
+    return this.nextInode;
+  }
+
+  /**
+   * Returns the number of directories in this image, excluding the root.
+   *
+   * @return number of directories.
+   */
+  public int numDirectories() {
+    return this.numDirectories;
+  }
+
+  /**
+   * Returns the number of text files in this image.
+   *
+   * @return number of text files.
+   */
+  public int numTextFiles() {
+    return this.numTextFiles;
+  }
+
+  /**
+   * Returns the offset of record index in the node table.
+   */
+  private int recordAt(int index) {
+    return this.nodesOffset + index * RECORD_SIZE;
+  }
+
+  /**
+   * Returns the number of files in this image, including the root, which is
+   * at record 0.
+   */
+  int numNodes() {
+    return this.numNodes;
+  }
+
+  /**
+   * Returns the inode of the file at record index.
+   */
+  long inodeOf(int index) {
+    return this.meta.getLong(this.recordAt(index));
+  }
+
+  /**
+   * Returns the name of the file at record index.
+   */
+  String nameOf(int index) {
+    int nameIndex = this.meta.getInt(this.recordAt(index) + 8);
+    int entry = this.namesOffset + 4 * nameIndex;
+    int start = this.meta.getInt(entry);
+    int end = this.meta.getInt(entry + 4);
+
+    // Names are stored right after their offsets.
+    int namesStart = this.namesOffset + 4 * (this.numNames + 1);
+    byte[] encoded = new byte[end - start];
+    ByteBuffer view = this.meta.duplicate();
+    view.position(namesStart + start);
+    view.get(encoded);
+    return new String(encoded, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the number of files directly inside the directory at record
+   * index.
+   */
+  int numContents(int index) {
+    return (int) this.meta.getLong(this.recordAt(index) + 24);
+  }
+
+  /**
+   * Returns whether or not the file at record index is a directory.
+   */
+  boolean isDirectoryAt(int index) {
+    return this.meta.get(this.recordAt(index) + 12) == DIRECTORY;
+  }
+
+  /**
+   * Returns the record of the first file directly inside the directory at
+   * record index.
+   */
+  int firstContent(int index) {
+    return (int) this.meta.getLong(this.recordAt(index) + 16);
+  }
+
+  /**
+   * Returns the contents of the text file at record index, without copying
+   * them out of the image.
+   */
+  TextBuffer textAt(int index) {
+    int record = this.recordAt(index);
+    byte coder = this.meta.get(record + 13);
+    long offset = this.meta.getLong(record + 16);
+    long length = this.meta.getLong(record + 24);
+    return new TextBuffer(this.contents(offset, length), coder);
+  }
+
+  /**
+   * Creates the files directly inside the directory at record index, adding
+   * them to dir.
+   */
+  void loadContents(ImageDirectory dir, int index) {
+    int first = this.firstContent(index);
+    int count = this.numContents(index);
+    for (int i = first; i < first + count; i++) {
+      dir.addLoadedFile(this.createFile(i, dir));
+    }
+  }
+
+  /**
+   * Creates the file at record index, with parent as its parent.
+   */
+  private File createFile(int index, Directory parent) {
+    if (this.isDirectoryAt(index)) {
+      return new ImageDirectory(this.nameOf(index), parent,
+          this.inodeOf(index), this, index);
+    }
+    return new TextFile(this.nameOf(index), parent, this.inodeOf(index),
+        this.textAt(index));
+  }
+
+  /**
+   * Returns a read-only view of length bytes at offset in the contents
+   * section. The contents are mapped in large windows; text that crosses from
+   * one window into the next is mapped on its own.
+   */
+  private ByteBuffer contents(long offset, long length) {
+    try {
+      long window = offset / WINDOW_SIZE;
+      if (length == 0) {
+        return ByteBuffer.allocate(0);
+      } else if ((offset + length - 1) / WINDOW_SIZE != window) {
+        return this.channel.map(FileChannel.MapMode.READ_ONLY,
+            this.contentsOffset + offset, length);
+      }
+
+      // Mapping the window on first use.
+      ByteBuffer mapped = this.windows.get(window);
+      if (mapped == null) {
+        long start = window * WINDOW_SIZE;
+        mapped = this.channel.map(FileChannel.MapMode.READ_ONLY,
+            this.contentsOffset + start,
+            Math.min(WINDOW_SIZE, this.contentsLength - start));
+        this.windows.put(window, mapped);
+      }
+      ByteBuffer view = mapped.duplicate();
+      int start = (int) (offset - window * WINDOW_SIZE);
+      view.limit(start + (int) length).position(start);
+      return view.slice();
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read image contents: "
+          + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * File as seen by the image writer, so that images can be written from
+   * something other than a directory tree in memory.
+   */
+  interface Entry {
+
+    /**
+     * Returns the inode of this file.
+     */
+    long getInode();
+
+    /**
+     * Returns the name of this file.
+     */
+    String getName();
+
+    /**
+     * Returns whether or not this file is a directory.
+     */
+    boolean isDirectory();
+
+    /**
+     * Returns the files directly inside this directory.
+     */
+    Entry[] getContents();
+
+    /**
+     * Returns the contents of this text file.
+     */
+    TextBuffer getText();
+  }
+
+  /**
+   * Entry for a File object in a directory tree in memory. Files that a copy
+   * of a directory still shares with the directory it is a copy of are read
+   * where they are, without copying anything: each gets an entry of its own
+   * in the copy, under an inode set aside for it.
+   */
+  static class FileEntry implements Entry {
+
+    private final File file; // File this entry is read from.
+    private final long inode; // Inode of this entry.
+    // Whether file itself is stored where this entry is, rather than shared.
+    private final boolean own;
+    // Inodes of the shared files underneath this entry, or null for the
+    // ones of the directory file itself.
+    private final SharedInodes shared;
+    // Whether the inodes given to shared files are remembered by the copies
+    // sharing them, as they are for checkpoints.
+    private final boolean remember;
+    // Whether this entry was only given its inode just now.
+    private final boolean fresh;
+    private Entry[] contents; // Entries directly inside, once listed.
+
+    /**
+     * Initializes new FileEntry for file, which is stored where it is. If
+     * remember is true, inodes given to files that copies underneath still
+     * share are remembered by those copies.
+     */
+    FileEntry(File file, boolean remember) {
+      this(file, file.getInode(), true, null, remember, false);
+    }
+
+    /**
+     * Initializes new FileEntry.
+     */
+    private FileEntry(File file, long inode, boolean own, SharedInodes shared,
+        boolean remember, boolean fresh) {
+      this.file = file;
+      this.inode = inode;
+      this.own = own;
+      this.shared = shared;
+      this.remember = remember;
+      this.fresh = fresh;
+    }
+
+    /**
+     * Returns whether or not this entry is for a shared file that was only
+     * given its inode just now, and so is not in any earlier checkpoint.
+     */
+    boolean isFresh() {
+      return this.fresh;
+    }
+
+    @Override
+    public long getInode() {
+      return this.inode;
+    }
+
+    @Override
+    public String getName() {
+      return this.file.getName();
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return this.file instanceof Directory;
+    }
+
+    @Override
+    public Entry[] getContents() {
+      if (this.contents != null) {
+        return this.contents;
+      }
+      Directory dir = (Directory) this.file;
+      SharedInodes inodes = this.shared;
+      ArrayList<Entry> entries = new ArrayList<Entry>();
+      // Pending copies list the files of their originals.
+      for (File f : dir.getContents(Long.MAX_VALUE)) {
+        if (this.own && f.getParentFile() == dir) {
+          if (!(f instanceof MountedDirectory)) {
+            entries.add(new FileEntry(f, this.remember));
+          }
+        } else {
+          if (inodes == null) {
+            inodes = this.remember ? dir.sharedInodes()
+                : new SharedInodes(this.inode);
+          }
+          SharedInodes given = inodes.find(f.getName());
+          boolean fresh = (given == null);
+          if (fresh) {
+            given = inodes.add(f.getName());
+          }
+          entries.add(new FileEntry(f, given.getInode(), false, given,
+              this.remember, fresh));
+        }
+      }
+      this.contents = entries.toArray(new Entry[entries.size()]);
+      return this.contents;
+    }
+
+    @Override
+    public TextBuffer getText() {
+      return ((TextFile) this.file).getContents();
+    }
+  }
+
+}
@@ -0,0 +1,371 @@
+package sys_files;
+
+import java.util.Arrays;
+
+/**
+ * Represents the files stored within a directory, by name, as a persistent
+ * hash array mapped trie. A table never changes: adding or removing a file
+ * gives a new table that shares all but the nodes on the way to that file
+ * with the old one, so earlier tables can be kept around for readers at
+ * little cost. Files are listed in the order they were added.
+ */
+class FileTable {
+
+  private final static int BITS = 5; // Hash bits used at each level.
+  private final static int MASK = (1 << BITS) - 1;
+
+  // Table with no files in it.
+  final static FileTable EMPTY = new FileTable(Node.EMPTY, 0, 0);
+
+  private final Node root; // Top node of the trie.
+  private final int size; // Number of files in this table.
+  private final long nextOrder; // Order of the next file to be added.
+  // Entries in the order they were added, once they have been listed.
+  private volatile Entry[] ordered;
+
+  /**
+   * Initializes new FileTable.
+   */
+  private FileTable(Node root, int size, long nextOrder) {
+    this.root = root;
+    this.size = size;
+    this.nextOrder = nextOrder;
+  }
+
+  /**
+   * Returns the hash of name, with the high bits mixed into the low ones
+   * that are used first.
+   */
+  private static int hash(String name) {
+    int h = name.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the number of files in this table.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the file stored under name, or null if there is none.
+   */
+  File get(String name) {
+    Entry entry = this.root.find(name, FileTable.hash(name), 0);
+    return (entry != null) ? entry.file : null;
+  }
+
+  /**
+   * Returns the place in the order of the file stored under name, or -1 if
+   * there is none.
+   */
+  long orderOf(String name) {
+    Entry entry = this.root.find(name, FileTable.hash(name), 0);
+    return (entry != null) ? entry.order : -1;
+  }
+
+  /**
+   * Returns a table with file stored under name, after every other file. Any
+   * file already stored under name is left out.
+   */
+  FileTable put(String name, File file) {
+    return this.put(name, file, this.nextOrder, this.nextOrder + 1);
+  }
+
+  /**
+   * Returns a table with file stored under name at order, a place that
+   * orderOf() gave for a file of this table or an earlier one, so that the
+   * file is listed where that file was. Any file already stored under name is
+   * left out.
+   */
+  FileTable put(String name, File file, long order) {
+    return this.put(name, file, order, this.nextOrder);
+  }
+
+  /**
+   * Returns a table with file stored under name at order, and nextOrder as
+   * the order of the next file to be added.
+   */
+  private FileTable put(String name, File file, long order, long nextOrder) {
+    boolean[] replaced = new boolean[1];
+    Node newRoot = this.root.put(new Entry(name, file, order),
+        FileTable.hash(name), 0, replaced);
+    return new FileTable(newRoot, replaced[0] ? this.size : this.size + 1,
+        nextOrder);
+  }
+
+  /**
+   * Returns a table with file stored under name in place of the file already
+   * stored there, keeping its place in the order. Requires there to be such
+   * a file.
+   */
+  FileTable replace(String name, File file) {
+    int hash = FileTable.hash(name);
+    Entry existing = this.root.find(name, hash, 0);
+    boolean[] replaced = new boolean[1];
+    Node newRoot = this.root.put(new Entry(name, file, existing.order), hash,
+        0, replaced);
+    return new FileTable(newRoot, this.size, this.nextOrder);
+  }
+
+  /**
+   * Returns a table without the file stored under name, or this table if
+   * there is no such file.
+   */
+  FileTable remove(String name) {
+    Node newRoot = this.root.remove(name, FileTable.hash(name), 0);
+    if (newRoot == this.root) {
+      return this;
+    }
+    return new FileTable((newRoot != null) ? newRoot : Node.EMPTY,
+        this.size - 1, this.nextOrder);
+  }
+
+  /**
+   * Returns the names the files are stored under, in the order they were
+   * added.
+   */
+  String[] names() {
+    Entry[] entries = this.ordered();
+    String[] names = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      names[i] = entries[i].name;
+    }
+    return names;
+  }
+
+  /**
+   * Returns the files, in the order they were added.
+   */
+  File[] files() {
+    Entry[] entries = this.ordered();
+    File[] files = new File[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      files[i] = entries[i].file;
+    }
+    return files;
+  }
+
+  /**
+   * Returns every entry in the order it was added. Worked out once per table,
+   * since a table never changes.
+   */
+  private Entry[] ordered() {
+    Entry[] entries = this.ordered;
+    if (entries == null) {
+      entries = new Entry[this.size];
+      this.root.collect(entries, 0);
+      Arrays.sort(entries, (a, b) -> Long.compare(a.order, b.order));
+      this.ordered = entries;
+    }
+    return entries;
+  }
+
+  /**
+   * A file, the name it is stored under, and when it was added.
+   */
+  private static class Entry {
+
+    private final String name; // Name the file is stored under.
+    private final File file; // The file itself.
+    private final long order; // Entries added later have a greater order.
+
+    /**
+     * Initializes new Entry.
+     */
+    Entry(String name, File file, long order) {
+      this.name = name;
+      this.file = file;
+      this.order = order;
+    }
+  }
+
+  /**
+   * A node of the trie. Each slot holds either an Entry or a Node one level
+   * down, and the bitmap tells which of the 32 possible slots are in use.
+   * Once every bit of the hash has been used, a node simply lists the
+   * entries whose names have the same hash.
+   */
+  private static class Node {
+
+    // Node with no slots in use.
+    private final static Node EMPTY = new Node(0, new Object[0]);
+
+    private final int bitmap; // Slots in use.
+    private final Object[] slots; // Entries and nodes, in slot order.
+
+    /**
+     * Initializes new Node.
+     */
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    /**
+     * Returns whether or not a node at shift lists entries instead of using
+     * its bitmap.
+     */
+    private static boolean isCollision(int shift) {
+      return shift >= Integer.SIZE;
+    }
+
+    /**
+     * Returns where the slot for bit is kept in slots.
+     */
+    private int index(int bit) {
+      return Integer.bitCount(this.bitmap & (bit - 1));
+    }
+
+    /**
+     * Returns the entry for name, or null if there is none.
+     */
+    Entry find(String name, int hash, int shift) {
+      if (Node.isCollision(shift)) {
+        for (Object slot : this.slots) {
+          if (((Entry) slot).name.equals(name)) {
+            return (Entry) slot;
+          }
+        }
+        return null;
+      }
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((this.bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = this.slots[this.index(bit)];
+      if (slot instanceof Node) {
+        return ((Node) slot).find(name, hash, shift + BITS);
+      }
+      Entry entry = (Entry) slot;
+      return entry.name.equals(name) ? entry : null;
+    }
+
+    /**
+     * Returns a node with entry in it, setting replaced[0] if it took the
+     * place of an entry with the same name.
+     */
+    Node put(Entry entry, int hash, int shift, boolean[] replaced) {
+      if (Node.isCollision(shift)) {
+        for (int i = 0; i < this.slots.length; i++) {
+          if (((Entry) this.slots[i]).name.equals(entry.name)) {
+            replaced[0] = true;
+            return this.with(i, entry);
+          }
+        }
+        Object[] slots = Arrays.copyOf(this.slots, this.slots.length + 1);
+        slots[this.slots.length] = entry;
+        return new Node(0, slots);
+      }
+
+      int bit = 1 << ((hash >>> shift) & MASK);
+      int index = this.index(bit);
+      if ((this.bitmap & bit) == 0) {
+        // Making room for the entry in its slot.
+        Object[] slots = new Object[this.slots.length + 1];
+        System.arraycopy(this.slots, 0, slots, 0, index);
+        slots[index] = entry;
+        System.arraycopy(this.slots, index, slots, index + 1,
+            this.slots.length - index);
+        return new Node(this.bitmap | bit, slots);
+      }
+
+      Object slot = this.slots[index];
+      if (slot instanceof Node) {
+        return this.with(index,
+            ((Node) slot).put(entry, hash, shift + BITS, replaced));
+      }
+      Entry existing = (Entry) slot;
+      if (existing.name.equals(entry.name)) {
+        replaced[0] = true;
+        return this.with(index, entry);
+      }
+
+      // Both entries go one level down, where their hashes may differ.
+      Node child = EMPTY.put(existing, FileTable.hash(existing.name),
+          shift + BITS, replaced);
+      child = child.put(entry, hash, shift + BITS, replaced);
+      return this.with(index, child);
+    }
+
+    /**
+     * Returns a node without the entry for name, this node if there is no
+     * such entry, or null if nothing would be left.
+     */
+    Node remove(String name, int hash, int shift) {
+      if (Node.isCollision(shift)) {
+        for (int i = 0; i < this.slots.length; i++) {
+          if (((Entry) this.slots[i]).name.equals(name)) {
+            return (this.slots.length == 1) ? null
+                : new Node(0, this.without(i));
+          }
+        }
+        return this;
+      }
+
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((this.bitmap & bit) == 0) {
+        return this;
+      }
+      int index = this.index(bit);
+      Object slot = this.slots[index];
+      if (slot instanceof Node) {
+        Node child = ((Node) slot).remove(name, hash, shift + BITS);
+        if (child == slot) {
+          return this;
+        } else if (child != null) {
+          // A lone entry below can take the place of its node.
+          if (child.slots.length == 1 && child.slots[0] instanceof Entry) {
+            return this.with(index, child.slots[0]);
+          }
+          return this.with(index, child);
+        }
+      } else if (!((Entry) slot).name.equals(name)) {
+        return this;
+      }
+
+      // The slot is no longer in use.
+      if (this.bitmap == bit) {
+        return null;
+      }
+      return new Node(this.bitmap & ~bit, this.without(index));
+    }
+
+    /**
+     * Returns a copy of this node with slot index set to value.
+     */
+    private Node with(int index, Object value) {
+      Object[] slots = this.slots.clone();
+      slots[index] = value;
+      return new Node(this.bitmap, slots);
+    }
+
+    /**
+     * Returns a copy of the slots of this node without slot index.
+     */
+    private Object[] without(int index) {
+      Object[] slots = new Object[this.slots.length - 1];
+      System.arraycopy(this.slots, 0, slots, 0, index);
+      System.arraycopy(this.slots, index + 1, slots, index,
+          slots.length - index);
+      return slots;
+    }
+
+    /**
+     * Puts every entry under this node into entries, starting at from.
+     * Returns where the next entry would go.
+     */
+    int collect(Entry[] entries, int from) {
+      for (Object slot : this.slots) {
+        if (slot instanceof Node) {
+          from = ((Node) slot).collect(entries, from);
+        } else {
+          entries[from++] = (Entry) slot;
+        }
+      }
+      return from;
+    }
+  }
+
+}
@@ -0,0 +1,49 @@
+package sys_files;
+
+/**
+ * Represents a directory read back in from a file system image. Its contents
+ * are only created from the image once they are first used.
+ */
+public class ImageDirectory extends Directory {
+
+  private FileSystemImage image; // Image this directory is stored in.
+  private int index; // Record of this directory in the image.
+
+  /**
+   * Initializes new ImageDirectory for the directory at record index of
+   * image.
+   * 
+   * @param dirName name for this ImageDirectory object.
+   * @param parent parent for this ImageDirectory object, or null for a root.
+   * @param inode inode for this ImageDirectory object.
+   * @param image image this directory is stored in.
+   * @param index record of this directory in image.
+   */
+  ImageDirectory(String dirName, Directory parent, long inode,
+      FileSystemImage image, int index) {
+    super(dirName, parent, inode);
+    this.image = image;
+    this.index = index;
+  }
+
+  /**
+   * Creates the contents of this directory from the image.
+   */
+  @Override
+  protected void loadContents() {
+    this.image.loadContents(this, this.index);
+  }
+
+  /**
+   * Returns whether or not this directory is empty, without reading in its
+   * contents.
+   */
+  @Override
+  public boolean isEmpty() {
+    if (!this.isLoaded()) {
+      return this.image.numContents(this.index) == 0;
+    }
+    return super.isEmpty();
+  }
+
+}
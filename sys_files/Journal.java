@@ -0,0 +1,799 @@
+package sys_files;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import exceptions.InvalidFileNameException;
+import exceptions.InvalidPathException;
+import exceptions.ReadOnlyFileException;
+
+/**
+ * Represents an append-only journal of the changes made to a file system, so
+ * that they can be replayed after a crash. Records are collected in memory and
+ * written out together (group commit), either once enough of them have been
+ * collected or once enough time has passed. Every so often the files changed
+ * since the last checkpoint are written to a delta checkpoint and the journal
+ * is emptied.
+ *
+ * Each record is laid out as:
+ *
+ * <pre>
+ *    length      number of bytes following the checksum (int)
+ *    checksum    CRC-32 of the bytes following it (int)
+ *    sequence    number of this record, counting up from 1 (long)
+ *    operation   kind of change (byte), followed by its arguments
+ * </pre>
+ */
+public class Journal {
+
+  // Kinds of changes that are recorded.
+  private final static byte ADD = 1; // A new file, with everything under it.
+  private final static byte COPY = 2; // A copy of an existing file.
+  private final static byte DETACH = 3; // A file taken out of its directory.
+  private final static byte ATTACH = 4; // A detached file put back in.
+  private final static byte RENAME = 5; // A file renamed.
+  private final static byte WRITE = 6; // Text file contents replaced.
+  private final static byte APPEND = 7; // Text appended to a text file.
+  private final static byte RESET = 8; // The whole file system cleared.
+  private final static byte TRUNCATE = 9; // Text cut off a text file.
+
+  // Kinds of files in ADD records.
+  private final static byte DIRECTORY = 0;
+  private final static byte TEXT_FILE = 1;
+
+  private final static int FRAME_BYTES = 8; // Length and checksum.
+
+  private final Path path; // Host file the journal is written to.
+  private final CheckpointStore checkpoints; // Checkpoints of the journal.
+  private final FileChannel channel; // Channel the journal is written to.
+  private final int syncRecords; // Records collected before writing them.
+  private final int checkpointRecords; // Records between checkpoints.
+
+  private long sequence = 0; // Sequence number of the last record.
+  private volatile int recordsSinceCheckpoint = 0; // Not in a checkpoint.
+
+  // Records collected but not written out yet.
+  private ByteArrayOutputStream batch = new ByteArrayOutputStream();
+  private int batchRecords = 0;
+
+  // Files taken out of their directories, by the number they were recorded
+  // under, so that putting them back in does not record them all over again.
+  private IdentityHashMap<File, Long> detached =
+      new IdentityHashMap<File, Long>();
+  private long nextDetached = 1;
+
+  // Files changed since the last checkpoint, and files added since then whose
+  // contents are all new as well.
+  private Set<File> changed =
+      Collections.newSetFromMap(new IdentityHashMap<File, Boolean>());
+  private Set<File> added =
+      Collections.newSetFromMap(new IdentityHashMap<File, Boolean>());
+  // Whether the next checkpoint has to hold the whole file system.
+  private boolean fullCheckpointDue = false;
+  // Whether a file was put back in its old place since the last checkpoint.
+  private volatile boolean orderRestored = false;
+  // Whether records are being replayed rather than made.
+  private boolean replaying = false;
+
+  // Writes out collected records on a timer, if there is one.
+  private ScheduledExecutorService flusher;
+
+  /**
+   * Initializes new Journal that appends to the host file at path.
+   */
+  private Journal(Path path, int syncRecords, long syncMillis,
+      int checkpointRecords, CheckpointStore checkpoints) throws IOException {
+    this.path = path;
+    this.checkpoints = checkpoints;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.syncRecords = Math.max(syncRecords, 1);
+    this.checkpointRecords = checkpointRecords;
+
+    // Writing out collected records regularly while the shell sits idle.
+    if (syncMillis > 0) {
+      this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "journal-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.flusher.scheduleWithFixedDelay(this::syncQuietly, syncMillis,
+          syncMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Recovers the file system from the journal at hostPath and its last
+   * checkpoint, if there are any, and starts recording every later change to
+   * the file system in that journal.
+   *
+   * @param hostPath path of the journal outside of the file system.
+   * @param syncRecords number of records collected before they are written
+   *        out; 1 writes out every record as soon as it is made.
+   * @param syncMillis longest time in milliseconds a record is kept before it
+   *        is written out, or 0 to only write records out by count.
+   * @param checkpointRecords number of records after which a checkpoint is
+   *        due, or 0 for no automatic checkpoints.
+   * @param compactDeltas number of delta checkpoints after which they are
+   *        merged into a whole checkpoint in the background, or 0 to only
+   *        merge them when recovering.
+   * @return Journal object recording changes to the file system.
+   * @throws IOException if the journal or checkpoint cannot be read.
+   */
+  public static Journal open(String hostPath, int syncRecords,
+      long syncMillis, int checkpointRecords, int compactDeltas)
+      throws IOException {
+    FileSystem disc = FileSystem.getInstance();
+    Path path = Paths.get(hostPath);
+    CheckpointStore checkpoints =
+        new CheckpointStore(Journal.checkpointPath(path), compactDeltas);
+
+    // Starting from the last checkpoint, which covers the journal up to the
+    // sequence number it was taken at.
+    long base = 0;
+    FileSystemImage image = checkpoints.recover();
+    if (image != null) {
+      disc.loadImage(image);
+      base = image.getSequence();
+    }
+
+    // Replaying the rest, keeping track of what it changes for the next
+    // checkpoint without recording it all over again.
+    Journal journal = new Journal(path, syncRecords, syncMillis,
+        checkpointRecords, checkpoints);
+    journal.sequence = base;
+    disc.setJournal(journal);
+    journal.replaying = true;
+    journal.replay(base);
+    journal.replaying = false;
+
+    // Deltas can only be taken on top of a whole checkpoint.
+    if (image == null) {
+      journal.fullCheckpointDue = true;
+      journal.checkpoint();
+    }
+
+    // Making sure the journal is written out when the shell exits.
+    Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+    return journal;
+  }
+
+  /**
+   * Returns the host path of the checkpoint belonging to the journal at path.
+   */
+  private static Path checkpointPath(Path path) {
+    return Paths.get(path.toString() + ".ckpt");
+  }
+
+  /**
+   * Returns the host path this journal is written to.
+   *
+   * @return path of this Journal outside of the file system.
+   */
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Records that file is about to be added to parent.
+   *
+   * @param file some File object.
+   * @param parent Directory object file is about to be added to.
+   */
+  void recordAdd(File file, Directory parent) {
+    if (!Journal.isAttached(parent) || file instanceof MountedDirectory) {
+      return;
+    }
+    this.changed.add(parent);
+    Long id = this.detached.remove(file);
+    if (id == null) {
+      this.added.add(file);
+    } else {
+      // It may have been renamed while it was taken out.
+      this.changed.add(file);
+    }
+    Record record;
+    if (id != null) {
+      // Putting back a file that was taken out, as when it is moved.
+      record = new Record(ATTACH);
+      record.writeLong(id);
+      record.writeString(parent.getPath());
+      record.writeString(file.getName());
+    } else if (file instanceof Directory
+        && Journal.isAttached(((Directory) file).getCopiedFrom())) {
+      // Adding a copy whose contents have not been copied yet, which is
+      // replayed by copying the same directory.
+      record = new Record(COPY);
+      record.writeString(((Directory) file).getCopiedFrom().getPath());
+      record.writeString(parent.getPath());
+      record.writeString(file.getName());
+    } else {
+      // Adding a file that has not been recorded before.
+      record = new Record(ADD);
+      record.writeString(parent.getPath());
+      record.writeFile(file);
+    }
+    this.append(record);
+  }
+
+  /**
+   * Records that file is about to be removed from its directory.
+   *
+   * @param file some File object.
+   */
+  void recordDelete(File file) {
+    if (!Journal.isAttached(file)) {
+      return;
+    }
+    this.changed.add(file.getParentFile());
+    long id = this.nextDetached++;
+    this.detached.put(file, id);
+    Record record = new Record(DETACH);
+    record.writeString(file.getPath());
+    record.writeLong(id);
+    this.append(record);
+  }
+
+  /**
+   * Records that file is about to be renamed to newName.
+   *
+   * @param file some File object.
+   * @param newName new name for file.
+   */
+  void recordRename(File file, String newName) {
+    if (!Journal.isAttached(file)) {
+      return;
+    }
+    this.changed.add(file);
+    Record record = new Record(RENAME);
+    record.writeString(file.getPath());
+    record.writeString(newName);
+    this.append(record);
+  }
+
+  /**
+   * Records that the contents of file are about to be set to newContents.
+   *
+   * @param file some TextFile object.
+   * @param newContents new contents for file.
+   */
+  void recordWrite(TextFile file, String newContents) {
+    this.recordText(WRITE, file, newContents);
+  }
+
+  /**
+   * Records that text is about to be appended to file.
+   *
+   * @param file some TextFile object.
+   * @param text text to be appended to file.
+   */
+  void recordAppend(TextFile file, String text) {
+    this.recordText(APPEND, file, text);
+  }
+
+  /**
+   * Records that the contents of file are about to be cut down to length
+   * characters.
+   *
+   * @param file some TextFile object.
+   * @param length number of characters to keep.
+   */
+  void recordTruncate(TextFile file, int length) {
+    if (!Journal.isAttached(file)) {
+      return;
+    }
+    this.changed.add(file);
+    Record record = new Record(TRUNCATE);
+    record.writeString(file.getPath());
+    record.writeLong(length);
+    this.append(record);
+  }
+
+  /**
+   * Records a change of kind operation to the contents of file.
+   */
+  private void recordText(byte operation, TextFile file, String text) {
+    if (!Journal.isAttached(file)) {
+      return;
+    }
+    this.changed.add(file);
+    Record record = new Record(operation);
+    record.writeString(file.getPath());
+    record.writeString(text);
+    this.append(record);
+  }
+
+  /**
+   * Records that dir got copy as its own copy of a file it shared, under an
+   * inode no checkpoint has given to that file. Nothing is replayed for it,
+   * but the next checkpoint has to hold the copy.
+   *
+   * @param copy new File object in dir.
+   * @param dir Directory object holding copy.
+   */
+  void recordOwnCopy(File copy, Directory dir) {
+    if (Journal.isAttached(dir)) {
+      this.changed.add(dir);
+      this.added.add(copy);
+    }
+  }
+
+  /**
+   * Records that the file just recorded as added is being put back where it
+   * was listed before, which the record itself does not say. The next
+   * checkpointIfDue() then takes a checkpoint, which does.
+   */
+  void recordRestoredOrder() {
+    this.orderRestored = true;
+  }
+
+  /**
+   * Records that the whole file system has been cleared.
+   */
+  void recordReset() {
+    this.detached.clear();
+    this.fullCheckpointDue = true;
+    this.append(new Record(RESET));
+  }
+
+  /**
+   * Returns whether or not file can be reached from the root of the file
+   * system without going through a mounted directory, which are the only
+   * files whose changes are recorded.
+   */
+  private static boolean isAttached(File file) {
+    if (file == null || MountedDirectory.isMounted(file)) {
+      return false;
+    }
+    while (file.getParentFile() instanceof Directory) {
+      Directory parent = (Directory) file.getParentFile();
+      if (!parent.holds(file)) {
+        return false;
+      }
+      file = parent;
+    }
+    return file == FileSystem.getInstance().getRoot();
+  }
+
+  /**
+   * Adds record to the batch of records to be written out, writing the batch
+   * out if it is full.
+   */
+  private synchronized void append(Record record) {
+    if (this.replaying) {
+      return;
+    }
+    this.sequence++;
+    this.recordsSinceCheckpoint++;
+    byte[] body = record.toByteArray(this.sequence);
+    CRC32 checksum = new CRC32();
+    checksum.update(body);
+
+    ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES);
+    frame.putInt(body.length).putInt((int) checksum.getValue());
+    this.batch.write(frame.array(), 0, FRAME_BYTES);
+    this.batch.write(body, 0, body.length);
+    this.batchRecords++;
+
+    if (this.batchRecords >= this.syncRecords) {
+      this.syncQuietly();
+    }
+  }
+
+  /**
+   * Writes out every collected record and waits until they are on disk.
+   *
+   * @throws IOException if the records cannot be written.
+   */
+  public synchronized void sync() throws IOException {
+    if (this.batchRecords == 0) {
+      return;
+    }
+    ByteBuffer toWrite = ByteBuffer.wrap(this.batch.toByteArray());
+    while (toWrite.hasRemaining()) {
+      this.channel.write(toWrite);
+    }
+    this.channel.force(false);
+    this.batch.reset();
+    this.batchRecords = 0;
+  }
+
+  /**
+   * Writes out every collected record, reporting rather than throwing any
+   * failure to do so.
+   */
+  private void syncQuietly() {
+    try {
+      this.sync();
+    } catch (IOException ex) {
+      System.out.println("journal: " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Takes a checkpoint if enough records have been made since the last one,
+   * or if a file was put back in its old place since then. Must only be
+   * called between commands, when no file is detached.
+   */
+  public void checkpointIfDue() {
+    if (this.checkpointRecords > 0
+        && (this.recordsSinceCheckpoint >= this.checkpointRecords
+            || this.orderRestored)) {
+      try {
+        this.checkpoint();
+      } catch (IOException ex) {
+        System.out.println("journal: " + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Writes the files changed since the last checkpoint to a delta checkpoint,
+   * or the whole file system if it has been replaced since, and empties the
+   * journal. If the shell stops before the journal is emptied, records
+   * already in the checkpoint are skipped when the journal is replayed.
+   *
+   * @throws IOException if the checkpoint cannot be written.
+   */
+  public void checkpoint() throws IOException {
+    // Changes are recorded under the change lock, so it is taken first.
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      this.writeCheckpoint();
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Writes the checkpoint for checkpoint(). Requires the change lock.
+   */
+  private synchronized void writeCheckpoint() throws IOException {
+    this.sync();
+    if (this.fullCheckpointDue) {
+      this.checkpoints.saveFull(FileSystem.getInstance().getRoot(),
+          this.sequence);
+    } else {
+      try {
+        this.checkpoints.saveDelta(this.changedFiles(), this.sequence);
+      } catch (IOException ex) {
+        // Shared files may have been given inodes for a delta that was never
+        // written, so only a whole checkpoint is sure to hold them.
+        this.fullCheckpointDue = true;
+        throw ex;
+      }
+    }
+    this.channel.truncate(0);
+    this.channel.force(true);
+    this.recordsSinceCheckpoint = 0;
+    this.detached.clear();
+    this.changed.clear();
+    this.added.clear();
+    this.fullCheckpointDue = false;
+    this.orderRestored = false;
+  }
+
+  /**
+   * Returns an entry for every file still in the file system that changed
+   * since the last checkpoint, including everything underneath files added
+   * since then. Files that copies of directories still share are written
+   * from where they are, without copying anything; those that have not been
+   * in a checkpoint before are written with everything underneath them.
+   */
+  private ArrayList<FileSystemImage.Entry> changedFiles() {
+    Set<Long> found = new HashSet<Long>();
+    ArrayList<FileSystemImage.Entry> entries =
+        new ArrayList<FileSystemImage.Entry>();
+    // Added trees go first, since a file that is already found is assumed
+    // to have everything underneath it found as well.
+    for (File file : this.added) {
+      if (Journal.isAttached(file) && !(file instanceof MountedDirectory)) {
+        Journal.addTree(new FileSystemImage.FileEntry(file, true), found,
+            entries);
+      }
+    }
+    for (File file : this.changed) {
+      if (!Journal.isAttached(file) || !found.add(file.getInode())) {
+        continue;
+      }
+      FileSystemImage.FileEntry entry =
+          new FileSystemImage.FileEntry(file, true);
+      entries.add(entry);
+      if (entry.isDirectory()) {
+        for (FileSystemImage.Entry e : entry.getContents()) {
+          if (((FileSystemImage.FileEntry) e).isFresh()) {
+            Journal.addTree(e, found, entries);
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Adds entry and everything underneath it to entries, unless found already
+   * has its inode.
+   */
+  private static void addTree(FileSystemImage.Entry entry, Set<Long> found,
+      ArrayList<FileSystemImage.Entry> entries) {
+    if (found.add(entry.getInode())) {
+      entries.add(entry);
+      if (entry.isDirectory()) {
+        for (FileSystemImage.Entry e : entry.getContents()) {
+          Journal.addTree(e, found, entries);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes out every collected record and stops recording.
+   */
+  public void close() {
+    if (this.flusher != null) {
+      this.flusher.shutdown();
+    }
+    this.checkpoints.close();
+    synchronized (this) {
+      if (this.channel.isOpen()) {
+        this.syncQuietly();
+        try {
+          this.channel.close();
+        } catch (IOException ex) {
+          System.out.println("journal: " + ex.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies every intact record after sequence number base to the file system,
+   * then cuts off anything after the last intact record, such as a record
+   * that was only partly written when the shell stopped.
+   */
+  private void replay(long base) throws IOException {
+    ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES);
+    HashMap<Long, File> taken = new HashMap<Long, File>();
+    long end = 0;
+
+    this.channel.position(0);
+    while (this.readFully(frame)) {
+      frame.flip();
+      int length = frame.getInt();
+      int expected = frame.getInt();
+      frame.clear();
+      if (length < Long.BYTES + 1
+          || length > this.channel.size() - this.channel.position()) {
+        break;
+      }
+      ByteBuffer body = ByteBuffer.allocate(length);
+      if (!this.readFully(body)) {
+        break;
+      }
+      CRC32 checksum = new CRC32();
+      checksum.update(body.array());
+      if ((int) checksum.getValue() != expected) {
+        break;
+      }
+      end = this.channel.position();
+
+      // Only applying records that are not in the checkpoint yet.
+      body.flip();
+      long recordSequence = body.getLong();
+      if (recordSequence > base) {
+        this.sequence = recordSequence;
+        this.recordsSinceCheckpoint++;
+        this.apply(body, taken);
+      }
+    }
+    this.channel.truncate(end);
+    this.channel.position(end);
+  }
+
+  /**
+   * Reads from the journal until buffer is full, returning whether or not
+   * there were enough bytes left to do so.
+   */
+  private boolean readFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (this.channel.read(buffer) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Applies the change recorded in body to the file system, where taken holds
+   * the files taken out of their directories so far.
+   */
+  private void apply(ByteBuffer body, HashMap<Long, File> taken) {
+    FileSystem disc = FileSystem.getInstance();
+    try {
+      byte operation = body.get();
+      if (operation == ADD) {
+        String parentPath = Journal.readString(body);
+        Journal.readFile(body, parentPath);
+      } else if (operation == COPY) {
+        File original = disc.resolve(Journal.readString(body));
+        String parentPath = Journal.readString(body);
+        String name = Journal.readString(body);
+        File copy = original.copy();
+        if (!name.equals(copy.getName())) {
+          copy.renameTo(name);
+        }
+        disc.addFile(copy, parentPath);
+      } else if (operation == DETACH) {
+        File file = disc.resolve(Journal.readString(body));
+        ((Directory) file.getParentFile()).deleteFile(file);
+        taken.put(body.getLong(), file);
+      } else if (operation == ATTACH) {
+        File file = taken.remove(body.getLong());
+        String parentPath = Journal.readString(body);
+        String name = Journal.readString(body);
+        if (!name.equals(file.getName())) {
+          file.renameTo(name);
+        }
+        disc.addFile(file, parentPath);
+      } else if (operation == RENAME) {
+        File file = disc.resolve(Journal.readString(body));
+        file.renameTo(Journal.readString(body));
+      } else if (operation == WRITE) {
+        TextFile file = (TextFile) disc.resolve(Journal.readString(body));
+        file.setContents(Journal.readString(body));
+      } else if (operation == APPEND) {
+        TextFile file = (TextFile) disc.resolve(Journal.readString(body));
+        file.appendContents(Journal.readString(body));
+      } else if (operation == TRUNCATE) {
+        TextFile file = (TextFile) disc.resolve(Journal.readString(body));
+        file.truncate((int) body.getLong());
+      } else if (operation == RESET) {
+        disc.cleanUp();
+        taken.clear();
+      }
+    } catch (InvalidPathException | InvalidFileNameException
+        | ReadOnlyFileException | BufferUnderflowException | ClassCastException
+        | IndexOutOfBoundsException | NullPointerException ex) {
+      // A record that no longer fits the file system is skipped.
+      System.out.println("journal: skipping record " + this.sequence + ": "
+          + ex.getMessage());
+    }
+  }
+
+  /**
+   * Reads a string written by Record.writeString from body.
+   */
+  private static String readString(ByteBuffer body) {
+    byte[] bytes = new byte[body.getInt()];
+    body.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a file written by Record.writeFile from body, along with everything
+   * underneath it, and adds it to the directory at parentPath.
+   */
+  private static void readFile(ByteBuffer body, String parentPath)
+      throws InvalidPathException, InvalidFileNameException,
+      ReadOnlyFileException {
+    FileSystem disc = FileSystem.getInstance();
+    byte type = body.get();
+    String name = Journal.readString(body);
+    if (type == TEXT_FILE) {
+      disc.addFile(new TextFile(name, parentPath, Journal.readString(body)),
+          parentPath);
+    } else {
+      Directory dir = new Directory(name, parentPath);
+      disc.addFile(dir, parentPath);
+      int count = body.getInt();
+      for (int i = 0; i < count; i++) {
+        Journal.readFile(body, dir.getPath());
+      }
+    }
+  }
+
+  /**
+   * Single journal record under construction.
+   */
+  private static class Record {
+
+    private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private DataOutputStream out = new DataOutputStream(this.bytes);
+
+    /**
+     * Initializes new Record of a change of kind operation.
+     */
+    Record(byte operation) {
+      this.writeByte(operation);
+    }
+
+    /**
+     * Returns the bytes of this record, preceded by its sequence number.
+     */
+    byte[] toByteArray(long sequence) {
+      byte[] body = this.bytes.toByteArray();
+      return ByteBuffer.allocate(Long.BYTES + body.length).putLong(sequence)
+          .put(body).array();
+    }
+
+    /**
+     * Adds b to this record.
+     */
+    void writeByte(int b) {
+      try {
+        this.out.writeByte(b);
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex); // Memory never fails to write.
+      }
+    }
+
+    /**
+     * Adds n to this record.
+     */
+    void writeLong(long n) {
+      try {
+        this.out.writeLong(n);
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    /**
+     * Adds s to this record, preceded by its length in bytes.
+     */
+    void writeString(String s) {
+      byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+      try {
+        this.out.writeInt(encoded.length);
+        this.out.write(encoded);
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+
+    /**
+     * Adds file and everything underneath it to this record.
+     */
+    void writeFile(File file) {
+      if (file instanceof TextFile) {
+        this.writeByte(TEXT_FILE);
+        this.writeString(file.getName());
+        this.writeString(file.fileContents());
+      } else {
+        // Pending copies and shared files are written from where they are.
+        File[] contents = ((Directory) file).getContents(Long.MAX_VALUE);
+        this.writeByte(DIRECTORY);
+        this.writeString(file.getName());
+        try {
+          this.out.writeInt(contents.length);
+        } catch (IOException ex) {
+          throw new IllegalStateException(ex);
+        }
+        for (File child : contents) {
+          this.writeFile(child);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+package sys_files;
+
+import java.util.Arrays;
+
+/**
+ * Represents the text a text file held as of some version of the file system,
+ * along with the offset at which each of its lines starts. Neither changes
+ * when the file does, so lines can be looked up without copying the text or
+ * holding the lock on the file. A newline at the very end of the text does
+ * not start another line.
+ *
+ * The line starts are usually shared with the text file, which only ever adds
+ * starts past the ones in use here. Text that was read in rather than written
+ * has its lines indexed the first time they are needed.
+ */
+public class Lines {
+
+  private final CharSequence text; // Text the lines are from.
+  // Offsets at which each line of text starts. Only the first numStarts
+  // elements are in use. Null until the lines are first needed.
+  private int[] starts;
+  private int numStarts;
+
+  /**
+   * Initializes new Lines of text, starting at the first numStarts offsets in
+   * starts, or to be indexed once needed if starts is null.
+   */
+  Lines(CharSequence text, int[] starts, int numStarts) {
+    this.text = text;
+    this.starts = starts;
+    this.numStarts = numStarts;
+  }
+
+  /**
+   * Returns the text these lines are from.
+   *
+   * @return text of these Lines.
+   */
+  public CharSequence getText() {
+    return this.text;
+  }
+
+  /**
+   * Returns the number of lines.
+   *
+   * @return number of lines in this Lines object.
+   */
+  public synchronized int numLines() {
+    this.ensureIndexed();
+    // Checking if the last line is empty.
+    if (this.starts[this.numStarts - 1] == this.text.length()) {
+      return this.numStarts - 1;
+    }
+    return this.numStarts;
+  }
+
+  /**
+   * Returns the index of the line that contains the character at offset.
+   *
+   * @param offset offset of some character in the text.
+   * @return index of the line containing offset, starting from 0.
+   */
+  public synchronized int lineAt(int offset) {
+    this.ensureIndexed();
+    int index = Arrays.binarySearch(this.starts, 0, this.numStarts, offset);
+    // When offset is not the start of a line, the search returns where it
+    // would have been inserted, which is right after the start of its line.
+    return (index >= 0) ? index : -index - 2;
+  }
+
+  /**
+   * Returns the line with the specified index, without its newline. The
+   * returned view does not copy the text.
+   *
+   * @param index index of some line, starting from 0.
+   * @return line at index.
+   */
+  public synchronized CharSequence getLine(int index) {
+    if (index < 0 || index >= this.numLines()) {
+      throw new IndexOutOfBoundsException("No line " + index);
+    }
+    int start = this.starts[index];
+    int end = this.text.length();
+    if (index + 1 < this.numStarts) {
+      end = this.starts[index + 1] - 1; // Excluding the newline.
+    }
+    return this.text.subSequence(start, end);
+  }
+
+  /**
+   * Indexes the lines of the text if that has not been done yet.
+   */
+  private void ensureIndexed() {
+    if (this.starts == null) {
+      this.starts = new int[] {0};
+      this.numStarts = 1;
+      for (int i = 0; i < this.text.length(); i++) {
+        if (this.text.charAt(i) == '\n') {
+          // Making room for more lines if needed.
+          if (this.numStarts == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.numStarts * 2);
+          }
+          this.starts[this.numStarts++] = i + 1;
+        }
+      }
+    }
+  }
+
+}
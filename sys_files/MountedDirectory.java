@@ -0,0 +1,182 @@
+package sys_files;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import exceptions.InvalidFileNameException;
+import exceptions.InvalidPathException;
+
+/**
+ * Represents a read-only view of a directory on the host. Its contents are
+ * only listed from the host once they are first used, and the text of the
+ * files inside it is only read once it is first used.
+ *
+ * Only directories and regular files are shown; symbolic links and other
+ * special files on the host are left out.
+ */
+public class MountedDirectory extends Directory {
+
+  private final Path hostPath; // Directory on the host shown by this one.
+
+  /**
+   * Initializes new MountedDirectory with directory name (if pathName is not
+   * a path) in the current directory, showing the host directory at
+   * hostPath. Otherwise, initializes a new MountedDirectory at pathName.
+   * 
+   * @param pathName name or path for this MountedDirectory object.
+   * @param hostPath path of some directory on the host.
+   * @throws InvalidFileNameException if pathName is an invalid name.
+   * @throws InvalidPathException if pathName is a path that is invalid.
+   */
+  public MountedDirectory(String pathName, Path hostPath)
+      throws InvalidFileNameException, InvalidPathException {
+    super(pathName);
+    this.hostPath = hostPath;
+    this.deferLoading();
+  }
+
+  /**
+   * Initializes new MountedDirectory for the host directory at hostPath, with
+   * parent as its parent.
+   */
+  MountedDirectory(String dirName, Directory parent, Path hostPath) {
+    super(dirName, parent, FileSystem.getInstance().reserveInode());
+    this.hostPath = hostPath;
+  }
+
+  /**
+   * Returns the path of the host directory shown by this directory.
+   * 
+   * @return path of this MountedDirectory on the host.
+   */
+  public Path getHostPath() {
+    return this.hostPath;
+  }
+
+  /**
+   * Lists the contents of this directory from the host, in order of name.
+   */
+  @Override
+  protected void loadContents() {
+    ArrayList<Path> children = new ArrayList<Path>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(this.hostPath)) {
+      for (Path child : stream) {
+        children.add(child);
+      }
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot list " + this.hostPath + ": "
+          + ex.getMessage(), ex);
+    }
+    Collections.sort(children);
+
+    for (Path child : children) {
+      BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(child, BasicFileAttributes.class,
+            LinkOption.NOFOLLOW_LINKS);
+      } catch (IOException ex) {
+        continue; // Removed from the host since it was listed.
+      }
+      String name = child.getFileName().toString();
+      if (attributes.isDirectory()) {
+        this.addLoadedFile(new MountedDirectory(name, this, child));
+      } else if (attributes.isRegularFile()) {
+        this.addLoadedFile(new MountedTextFile(name, this, child));
+      }
+    }
+  }
+
+  /**
+   * Returns whether or not this directory is empty, without listing all of
+   * its contents.
+   */
+  @Override
+  public boolean isEmpty() {
+    if (!this.isLoaded()) {
+      try (DirectoryStream<Path> stream =
+          Files.newDirectoryStream(this.hostPath)) {
+        return !stream.iterator().hasNext();
+      } catch (IOException ex) {
+        return true;
+      }
+    }
+    return super.isEmpty();
+  }
+
+  /**
+   * Returns true, since files cannot be changed through a mounted directory.
+   */
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  /**
+   * Refuses to add file, since this directory is read-only.
+   */
+  @Override
+  public void addFile(File file) {
+    throw MountedDirectory.readOnly(this);
+  }
+
+  /**
+   * Refuses to delete file, since this directory is read-only.
+   */
+  @Override
+  public void deleteFile(File file) {
+    throw MountedDirectory.readOnly(this);
+  }
+
+  /**
+   * Refuses to replace the contents, since this directory is read-only.
+   */
+  @Override
+  public void setContents(File[] newContents) {
+    throw MountedDirectory.readOnly(this);
+  }
+
+  /**
+   * Renames this directory, unless it is inside another mounted directory.
+   */
+  @Override
+  public void renameTo(String newName) {
+    if (this.getParentFile() instanceof MountedDirectory) {
+      throw MountedDirectory.readOnly(this);
+    }
+    super.renameTo(newName);
+  }
+
+  /**
+   * Returns the exception thrown when trying to change file directly.
+   * Commands check that files can be changed first, and FileSystem throws
+   * ReadOnlyFileException instead, so this only stops changes made some other
+   * way.
+   */
+  static UnsupportedOperationException readOnly(File file) {
+    return new UnsupportedOperationException(file.getPath()
+        + ": Read-only file system.");
+  }
+
+  /**
+   * Returns whether or not file is a mounted directory or inside one.
+   * 
+   * @param file some File object.
+   * @return true if file shows something on the host, otherwise false.
+   */
+  public static boolean isMounted(File file) {
+    for (File f = file; f != null; f = f.getParentFile()) {
+      if (f instanceof MountedDirectory) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,106 @@
+package sys_files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a read-only view of a regular file on the host. Its text is only
+ * read once it is first used, by mapping the host file into memory.
+ */
+public class MountedTextFile extends TextFile {
+
+  private final Path hostPath; // File on the host shown by this one.
+
+  /**
+   * Initializes new MountedTextFile for the host file at hostPath, with
+   * parent as its parent.
+   */
+  MountedTextFile(String fileName, MountedDirectory parent, Path hostPath) {
+    super(fileName, parent, FileSystem.getInstance().reserveInode(), null);
+    this.hostPath = hostPath;
+  }
+
+  /**
+   * Returns the path of the host file shown by this text file.
+   * 
+   * @return path of this MountedTextFile on the host.
+   */
+  public Path getHostPath() {
+    return this.hostPath;
+  }
+
+  /**
+   * Reads in the text of the host file. Text that is all ASCII is used
+   * straight from the mapped file; anything else is decoded from UTF-8.
+   */
+  @Override
+  protected TextBuffer loadContents() {
+    try (FileChannel channel =
+        FileChannel.open(this.hostPath, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalStateException(this.getPath()
+            + ": File too large.");
+      }
+      MappedByteBuffer mapped =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (MountedTextFile.isAscii(mapped)) {
+        return new TextBuffer(mapped, TextBuffer.LATIN1);
+      }
+      return new TextBuffer(StandardCharsets.UTF_8.decode(mapped));
+    } catch (IOException ex) {
+      throw new IllegalStateException("Cannot read " + this.hostPath + ": "
+          + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Returns whether or not every byte of bytes is ASCII, in which case the
+   * bytes are also valid Latin-1.
+   */
+  private static boolean isAscii(ByteBuffer bytes) {
+    for (int i = bytes.position(); i < bytes.limit(); i++) {
+      if (bytes.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true, since files cannot be changed through a mounted directory.
+   */
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  /**
+   * Refuses to replace the contents, since this file is read-only.
+   */
+  @Override
+  public void setContents(String newContents) {
+    throw MountedDirectory.readOnly(this);
+  }
+
+  /**
+   * Refuses to append to the contents, since this file is read-only.
+   */
+  @Override
+  public void appendContents(String text) {
+    throw MountedDirectory.readOnly(this);
+  }
+
+  /**
+   * Refuses to rename this file, since it is inside a mounted directory.
+   */
+  @Override
+  public void renameTo(String newName) {
+    throw MountedDirectory.readOnly(this);
+  }
+
+}
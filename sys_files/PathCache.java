@@ -0,0 +1,142 @@
+package sys_files;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents a bounded cache that maps absolute paths to the File objects
+ * they lead to, so that the same path does not have to be followed through
+ * the directory tree over and over again. Least recently used paths are
+ * dropped first once the cache is full.
+ *
+ * The cache can be used from many threads at once. Since a path may change
+ * while another thread is following it, a path is only cached if nothing was
+ * removed from the cache since that thread started following it.
+ */
+public class PathCache {
+
+  private final int capacity; // Maximum number of cached paths.
+  private long hits = 0; // Number of lookups that found a cached path.
+  private long misses = 0; // Number of lookups that did not.
+  private long removals = 0; // Number of times paths were removed.
+
+  // Cached paths in least to most recently used order.
+  private LinkedHashMap<String, File> entries;
+
+  /**
+   * Initializes new PathCache that holds at most capacity paths.
+   *
+   * @param capacity maximum number of paths to be cached.
+   */
+  public PathCache(int capacity) {
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<String, File>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+        return this.size() > PathCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the File object cached for path, or null if path is not cached.
+   *
+   * @param path some absolute path.
+   * @return File object cached for path, or null.
+   */
+  public synchronized File get(String path) {
+    File file = this.entries.get(path);
+    if (file != null) {
+      this.hits++;
+    } else {
+      this.misses++;
+    }
+    return file;
+  }
+
+  /**
+   * Returns a stamp to be passed to put() once a path has been followed.
+   *
+   * @return number of times paths have been removed from this cache so far.
+   */
+  public synchronized long stamp() {
+    return this.removals;
+  }
+
+  /**
+   * Caches file as the File object found at path, unless any path has been
+   * removed from the cache since stamp was taken, in which case path may no
+   * longer lead to file.
+   *
+   * @param path some absolute path.
+   * @param file File object found at path.
+   * @param stamp value of stamp() from before path was followed.
+   */
+  public synchronized void put(String path, File file, long stamp) {
+    if (stamp == this.removals) {
+      this.entries.put(path, file);
+    }
+  }
+
+  /**
+   * Removes path, but not the paths underneath it, from the cache.
+   *
+   * @param path some absolute path that is about to change.
+   */
+  public synchronized void remove(String path) {
+    this.removals++;
+    this.entries.remove(path);
+  }
+
+  /**
+   * Removes path and every path underneath it from the cache.
+   *
+   * @param path some absolute path that is about to change.
+   */
+  public synchronized void invalidate(String path) {
+    // Everything is underneath the root.
+    if ("/".equals(path)) {
+      this.clear();
+      return;
+    }
+    this.removals++;
+    this.entries.remove(path);
+
+    // Removing any paths that lead through path.
+    String prefix = path + "/";
+    Iterator<String> it = this.entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes every path from the cache.
+   */
+  public synchronized void clear() {
+    this.removals++;
+    this.entries.clear();
+  }
+
+  /**
+   * Returns the number of lookups that found a cached path.
+   *
+   * @return number of cache hits.
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of lookups that did not find a cached path.
+   *
+   * @return number of cache misses.
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+}
@@ -0,0 +1,164 @@
+package sys_files;
+
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents one user of the shell, with a current working directory and an
+ * output stream of their own, while the file system is shared by everyone.
+ * The user at the terminal has the console session; every connection to the
+ * shell server has a session of its own.
+ *
+ * Each thread works on behalf of one session. Threads started by a thread
+ * (such as the commands of a pipeline) work on behalf of the same session.
+ */
+public class Session {
+
+  // Sessions that have not ended.
+  private static final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+  private static final Session console = new Session(null); // Terminal user.
+
+  // Session each thread works on behalf of.
+  private static final InheritableThreadLocal<Session> current =
+      new InheritableThreadLocal<Session>();
+
+  // Current working directory, or null for the root directory.
+  private volatile Directory currentDirectory = null;
+  private volatile PrintStream out; // Where output of this session goes.
+  private volatile boolean ended = false; // Whether this session has ended.
+  // Changes this session has made, so that they can be undone.
+  private final UndoHistory undoHistory = new UndoHistory();
+
+  /**
+   * Initializes new Session whose output goes to out, starting in the root
+   * directory.
+   *
+   * @param out stream for the output of this Session object.
+   */
+  public Session(PrintStream out) {
+    this.out = out;
+    sessions.add(this);
+  }
+
+  /**
+   * Returns the session the calling thread works on behalf of.
+   *
+   * @return current Session object, or the console session if the thread
+   *         does not work on behalf of any other one.
+   */
+  public static Session current() {
+    Session session = current.get();
+    return (session != null) ? session : console;
+  }
+
+  /**
+   * Makes the calling thread, and threads it starts from now on, work on
+   * behalf of session.
+   *
+   * @param session some Session object, or null for the console session.
+   */
+  public static void setCurrent(Session session) {
+    current.set(session);
+  }
+
+  /**
+   * Returns the session of the user at the terminal.
+   *
+   * @return console Session object.
+   */
+  public static Session getConsole() {
+    return console;
+  }
+
+  /**
+   * Returns whether or not this is the session of the user at the terminal.
+   *
+   * @return true if this Session object is the console session.
+   */
+  public boolean isConsole() {
+    return this == console;
+  }
+
+  /**
+   * Returns the current working directory of this session.
+   *
+   * @return Directory object representing the current working directory.
+   */
+  public Directory getCurrentDirectory() {
+    Directory directory = this.currentDirectory;
+    return (directory != null) ? directory : FileSystem.getInstance().getRoot();
+  }
+
+  /**
+   * Sets the current working directory of this session to the one specified.
+   *
+   * @param newDirectory Directory object representing a new working directory.
+   */
+  public void setCurrentDirectory(Directory newDirectory) {
+    this.currentDirectory = newDirectory;
+  }
+
+  /**
+   * Returns the changes this session has made that can be undone or redone.
+   *
+   * @return UndoHistory object of this Session.
+   */
+  public UndoHistory getUndoHistory() {
+    return this.undoHistory;
+  }
+
+  /**
+   * Moves every session back to the root directory and drops what they could
+   * undo, for when the whole file system is replaced.
+   */
+  static void resetAll() {
+    console.currentDirectory = null;
+    console.undoHistory.clear();
+    for (Session session : sessions) {
+      session.currentDirectory = null;
+      session.undoHistory.clear();
+    }
+  }
+
+  /**
+   * Returns the stream the output of this session goes to, or System.out if
+   * none was given.
+   *
+   * @return output stream of this Session object.
+   */
+  public PrintStream getOut() {
+    PrintStream stream = this.out;
+    return (stream != null) ? stream : System.out;
+  }
+
+  /**
+   * Sets the stream the output of this session goes to.
+   *
+   * @param newOut new output stream for this Session object.
+   */
+  public void setOut(PrintStream newOut) {
+    this.out = newOut;
+  }
+
+  /**
+   * Ends this session. The console session cannot be ended.
+   */
+  public void end() {
+    if (!this.isConsole()) {
+      this.ended = true;
+      sessions.remove(this);
+    }
+  }
+
+  /**
+   * Returns whether or not this session has ended.
+   *
+   * @return true if this Session object has ended, otherwise false.
+   */
+  public boolean isEnded() {
+    return this.ended;
+  }
+
+}
@@ -0,0 +1,66 @@
+package sys_files;
+
+import java.util.HashMap;
+
+/**
+ * Represents the inodes that a checkpoint gave to files a copy of a directory
+ * still shares with the directory it is a copy of, and to everything
+ * underneath them. Those files are written to the checkpoint as if the copy
+ * had files of its own, without making any. Once the copy does get its own
+ * copy of one of them, the new file takes over its inode, and the inodes
+ * underneath it, so the checkpoint still describes it. Files are known by
+ * name, which does not change for as long as they are shared.
+ *
+ * Only used under the change lock.
+ */
+class SharedInodes {
+
+  private final long inode; // Inode given to the file.
+  // Inodes given to the files directly inside it, by name.
+  private HashMap<String, SharedInodes> contents = null;
+
+  /**
+   * Initializes new SharedInodes for a file given inode.
+   */
+  SharedInodes(long inode) {
+    this.inode = inode;
+  }
+
+  /**
+   * Returns the inode given to the file.
+   */
+  long getInode() {
+    return this.inode;
+  }
+
+  /**
+   * Returns the inodes given to the file directly inside named name, or null
+   * if it has not been given any yet.
+   */
+  SharedInodes find(String name) {
+    return (this.contents != null) ? this.contents.get(name) : null;
+  }
+
+  /**
+   * Gives the file directly inside named name a new inode, and returns it
+   * along with the ones to be given to the files underneath it.
+   */
+  SharedInodes add(String name) {
+    if (this.contents == null) {
+      this.contents = new HashMap<String, SharedInodes>();
+    }
+    SharedInodes inodes =
+        new SharedInodes(FileSystem.getInstance().reserveInode());
+    this.contents.put(name, inodes);
+    return inodes;
+  }
+
+  /**
+   * Takes out and returns the inodes given to the file directly inside named
+   * name, or null if it has not been given any.
+   */
+  SharedInodes take(String name) {
+    return (this.contents != null) ? this.contents.remove(name) : null;
+  }
+
+}
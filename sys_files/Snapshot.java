@@ -0,0 +1,93 @@
+package sys_files;
+
+/**
+ * Represents the file system as it was at one moment, for commands that only
+ * read it. Directories and text files read through a snapshot show what they
+ * held at that moment, however much they are changed while it is being read,
+ * and reading never waits for changes to be made. A snapshot must be closed
+ * once it is no longer read, so that what files held back then can be
+ * dropped.
+ */
+public class Snapshot implements AutoCloseable {
+
+  private final FileSystem disc; // File system this is a snapshot of.
+  private final long version; // Version of the file system this shows.
+  private boolean closed = false; // Whether this snapshot has been closed.
+
+  /**
+   * Initializes new Snapshot of version of disc.
+   */
+  Snapshot(FileSystem disc, long version) {
+    this.disc = disc;
+    this.version = version;
+  }
+
+  /**
+   * Returns the files dir held at the moment of this snapshot, in the order
+   * they were added.
+   *
+   * @param dir some Directory object.
+   * @return array of File objects in dir back then.
+   */
+  public File[] getContents(Directory dir) {
+    return dir.getContents(this.version);
+  }
+
+  /**
+   * Returns the names of the files dir held at the moment of this snapshot,
+   * in the same order as getContents(dir). Files renamed since are listed
+   * under the names they had back then.
+   *
+   * @param dir some Directory object.
+   * @return array of names of the files in dir back then.
+   */
+  public String[] getContentArray(Directory dir) {
+    return dir.getContentArray(this.version);
+  }
+
+  /**
+   * Returns the file dir held under fileName at the moment of this snapshot,
+   * or null if there was no such file.
+   *
+   * @param dir some Directory object.
+   * @param fileName name of some File object.
+   * @return File object named fileName in dir back then, or null.
+   */
+  public File getFile(Directory dir, String fileName) {
+    return dir.getFile(fileName, this.version);
+  }
+
+  /**
+   * Returns the contents file had at the moment of this snapshot. The text
+   * is not copied.
+   *
+   * @param file some TextFile object.
+   * @return contents of file back then.
+   */
+  public CharSequence getText(TextFile file) {
+    return file.snapshot(this.version);
+  }
+
+  /**
+   * Returns the lines file had at the moment of this snapshot. The text is
+   * not copied.
+   *
+   * @param file some TextFile object.
+   * @return lines of file back then.
+   */
+  public Lines getLines(TextFile file) {
+    return file.lines(this.version);
+  }
+
+  /**
+   * Closes this snapshot. Closing it again has no effect.
+   */
+  @Override
+  public synchronized void close() {
+    if (!this.closed) {
+      this.closed = true;
+      this.disc.closeSnapshot(this.version);
+    }
+  }
+
+}
@@ -0,0 +1,355 @@
+package sys_files;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents growable text stored as bytes. As long as every character fits
+ * in a single byte (Latin-1) the text takes one byte per character; once a
+ * wider character is added, the text is widened to two bytes per character
+ * (UTF-16).
+ */
+public class TextBuffer implements CharSequence {
+
+  // Encodings the text can be stored in.
+  public final static byte LATIN1 = 0;
+  public final static byte UTF16 = 1;
+
+  private final static int MIN_CAPACITY = 16; // Smallest buffer allocated.
+
+  private ByteBuffer bytes; // Encoded text, starting at index 0.
+  private byte coder; // Encoding of bytes; also the log2 of bytes per char.
+  private int length; // Number of characters stored.
+  // Number of text files sharing this buffer. Guarded by the lock on this
+  // buffer, since text files in different threads may share it.
+  private int holders = 0;
+  private boolean interned = false; // Whether this buffer is in a store.
+  private long hash; // Hash this buffer is stored by, if interned.
+
+  /**
+   * Initializes new TextBuffer containing text.
+   *
+   * @param text initial text for this TextBuffer object.
+   */
+  public TextBuffer(CharSequence text) {
+    this.coder =
+        TextBuffer.fitsLatin1(text, 0, text.length()) ? LATIN1 : UTF16;
+    this.bytes = ByteBuffer.allocate(text.length() << this.coder);
+    this.length = 0;
+    this.append(text);
+  }
+
+  /**
+   * Initializes new TextBuffer that reads its text from bytes encoded with
+   * coder, without copying them.
+   *
+   * @param bytes encoded text; its remaining bytes are used.
+   * @param coder encoding of bytes (LATIN1 or UTF16).
+   */
+  public TextBuffer(ByteBuffer bytes, byte coder) {
+    this.bytes = bytes.slice();
+    this.coder = coder;
+    this.length = this.bytes.remaining() >> coder;
+  }
+
+  /**
+   * Records that one more text file uses this buffer.
+   */
+  synchronized void retain() {
+    this.holders++;
+  }
+
+  /**
+   * Records that one less text file uses this buffer.
+   */
+  synchronized void release() {
+    this.holders--;
+  }
+
+  /**
+   * Returns whether or not any text file uses this buffer.
+   */
+  synchronized boolean isHeld() {
+    return this.holders > 0;
+  }
+
+  /**
+   * Records that this buffer has been put in a content store under hash.
+   */
+  synchronized void setInterned(long hash) {
+    this.interned = true;
+    this.hash = hash;
+  }
+
+  /**
+   * Returns whether or not this buffer is kept in a content store, in which
+   * case it must be copied before being changed.
+   *
+   * @return true if this TextBuffer object is in a ContentStore.
+   */
+  public synchronized boolean isInterned() {
+    return this.interned;
+  }
+
+  /**
+   * Returns the hash this buffer is stored by in a content store.
+   */
+  synchronized long getHash() {
+    return this.hash;
+  }
+
+  /**
+   * Returns whether or not more than one text file uses this buffer, in which
+   * case it must be copied before being changed.
+   *
+   * @return true if this TextBuffer object is shared, otherwise false.
+   */
+  public synchronized boolean isShared() {
+    return this.holders > 1;
+  }
+
+  /**
+   * Returns a copy of this buffer that can be changed independently.
+   *
+   * @return a new TextBuffer object with the same text.
+   */
+  public TextBuffer copy() {
+    TextBuffer copy = new TextBuffer(this.encoded(), this.coder);
+    copy.ensureCapacity(copy.byteLength());
+    return copy;
+  }
+
+  /**
+   * Returns whether or not every character of text between start and end fits
+   * in a single byte.
+   */
+  private static boolean fitsLatin1(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds text to the end of this buffer.
+   *
+   * @param text text to be appended.
+   */
+  public void append(CharSequence text) {
+    // Widening the stored text if it can no longer be stored as Latin-1.
+    if (this.coder == LATIN1
+        && !TextBuffer.fitsLatin1(text, 0, text.length())) {
+      this.inflate();
+    }
+    this.ensureCapacity((this.length + text.length()) << this.coder);
+
+    // Writing each character at the end of the stored text.
+    for (int i = 0; i < text.length(); i++) {
+      this.put(this.length + i, text.charAt(i));
+    }
+    this.length += text.length();
+  }
+
+  /**
+   * Drops every character from index length on. The bytes of the dropped
+   * characters are left as they are, for views that still show them, until
+   * more text is appended.
+   *
+   * @param length number of characters to keep.
+   */
+  void truncate(int length) {
+    if (length < 0 || length > this.length) {
+      throw new IndexOutOfBoundsException("new length " + length
+          + ", length " + this.length);
+    }
+    this.length = length;
+  }
+
+  /**
+   * Makes sure there is room for at least capacity bytes.
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.bytes.capacity() || this.bytes.isReadOnly()) {
+      int newCapacity = Math.max(capacity, this.bytes.capacity() * 2);
+      this.reallocate(Math.max(newCapacity, MIN_CAPACITY), this.coder);
+    }
+  }
+
+  /**
+   * Converts the stored text from Latin-1 to UTF-16.
+   */
+  private void inflate() {
+    this.reallocate(Math.max(this.bytes.capacity() * 2, MIN_CAPACITY), UTF16);
+  }
+
+  /**
+   * Copies the stored text into a new buffer of capacity bytes, encoding it
+   * with newCoder.
+   */
+  private void reallocate(int capacity, byte newCoder) {
+    ByteBuffer old = this.bytes;
+    byte oldCoder = this.coder;
+    this.bytes = ByteBuffer.allocate(capacity);
+    this.coder = newCoder;
+    for (int i = 0; i < this.length; i++) {
+      this.put(i, TextBuffer.get(old, oldCoder, i));
+    }
+  }
+
+  /**
+   * Stores c at character index i.
+   */
+  private void put(int i, char c) {
+    if (this.coder == LATIN1) {
+      this.bytes.put(i, (byte) c);
+    } else {
+      this.bytes.putChar(i << 1, c);
+    }
+  }
+
+  /**
+   * Returns the character at index i of bytes encoded with coder.
+   */
+  private static char get(ByteBuffer bytes, byte coder, int i) {
+    if (coder == LATIN1) {
+      return (char) (bytes.get(i) & 0xFF);
+    }
+    return bytes.getChar(i << 1);
+  }
+
+  /**
+   * Returns the number of characters stored.
+   */
+  @Override
+  public int length() {
+    return this.length;
+  }
+
+  /**
+   * Returns the character at index.
+   */
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= this.length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length "
+          + this.length);
+    }
+    return TextBuffer.get(this.bytes, this.coder, index);
+  }
+
+  /**
+   * Returns the text between start and end. The returned view shares the
+   * stored bytes rather than copying them.
+   */
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > this.length || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end
+          + ", length " + this.length);
+    }
+    ByteBuffer view = this.bytes.duplicate();
+    view.limit(end << this.coder).position(start << this.coder);
+    return new TextBuffer(view.asReadOnlyBuffer(), this.coder);
+  }
+
+  /**
+   * Returns the stored text as a string.
+   */
+  @Override
+  public String toString() {
+    return this.getCharset().decode(this.encoded()).toString();
+  }
+
+  /**
+   * Returns the encoding the text is stored in (LATIN1 or UTF16).
+   *
+   * @return encoding of this TextBuffer object.
+   */
+  public byte getCoder() {
+    return this.coder;
+  }
+
+  /**
+   * Returns the character set of the encoded text.
+   *
+   * @return character set that the bytes of this TextBuffer object are in.
+   */
+  public Charset getCharset() {
+    return (this.coder == LATIN1) ? StandardCharsets.ISO_8859_1
+        : StandardCharsets.UTF_16BE;
+  }
+
+  /**
+   * Returns the number of bytes used by the stored text.
+   *
+   * @return number of bytes of encoded text.
+   */
+  public int byteLength() {
+    return this.length << this.coder;
+  }
+
+  /**
+   * Returns a read-only view of the encoded text.
+   *
+   * @return encoded text of this TextBuffer object.
+   */
+  public ByteBuffer encoded() {
+    ByteBuffer view = this.bytes.asReadOnlyBuffer();
+    view.position(0).limit(this.byteLength());
+    return view;
+  }
+
+  /**
+   * Returns a stream of the encoded text. Bytes are read directly from this
+   * buffer, which must not change while the stream is in use.
+   *
+   * @return input stream over the bytes of this TextBuffer object, which are
+   *         in the character set given by getCharset().
+   */
+  public InputStream newInputStream() {
+    final ByteBuffer view = this.encoded();
+    return new InputStream() {
+      @Override
+      public int read() {
+        return view.hasRemaining() ? (view.get() & 0xFF) : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if (!view.hasRemaining()) {
+          return -1;
+        }
+        len = Math.min(len, view.remaining());
+        view.get(b, off, len);
+        return len;
+      }
+
+      @Override
+      public int available() {
+        return view.remaining();
+      }
+    };
+  }
+
+  /**
+   * Returns whether or not this buffer contains nothing but whitespace.
+   *
+   * @return true if every character is whitespace, otherwise false.
+   */
+  public boolean isBlank() {
+    for (int i = 0; i < this.length; i++) {
+      if (TextBuffer.get(this.bytes, this.coder, i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
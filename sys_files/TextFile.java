@@ -1,14 +1,34 @@
 package sys_files;
 
+import java.util.Arrays;
+
 import exceptions.InvalidFileNameException;
 import exceptions.InvalidPathException;
 
 /**
  * Representation of a text file document.
+ * 
+ * The contents are guarded by the lock on this object. Changes are made under
+ * the change lock of the file system as well. Threads that read the contents
+ * while other threads may change them take a snapshot() and read that, which
+ * needs no lock once the contents have been read in.
  */
 public class TextFile extends File {
 
-  private String contents; // Contents of this file.
+  // Contents of this file. Kept in a growable, byte-encoded buffer so that
+  // appending to the file does not copy what is already there.
+  private TextBuffer contents;
+  // Text of this file as of each version of the file system that may still be
+  // read, newest first, along with where its lines start. Each one is a view
+  // of a buffer that never changes, since buffers are only ever appended to.
+  // Null until the contents have been read in.
+  private volatile Version<Lines> versions;
+
+  // Offsets at which each line of the contents starts, kept up to date as the
+  // contents are written. Only the first numStarts elements are in use. Null
+  // for contents that were read in, until they are first written.
+  private int[] lineStarts;
+  private int numStarts;
 
   /**
    * Initializes new TextFile with file name (if pathName is not a path) and
@@ -22,7 +42,7 @@ public class TextFile extends File {
   public TextFile(String pathName) throws InvalidFileNameException,
       InvalidPathException {
     super(pathName);
-    this.contents = "";
+    this.setContents("");
   }
 
   /**
@@ -37,7 +57,7 @@ public class TextFile extends File {
   public TextFile(String fileName, String path)
       throws InvalidFileNameException, InvalidPathException {
     super(fileName, path);
-    this.contents = "";
+    this.setContents("");
   }
 
   /**
@@ -52,7 +72,76 @@ public class TextFile extends File {
   public TextFile(String fileName, String path, String contents)
       throws InvalidFileNameException, InvalidPathException {
     super(fileName, path);
-    this.contents = contents;
+    this.setContents(contents);
+  }
+
+  /**
+   * Initializes new TextFile with the specified name, parent, inode and
+   * contents, for text files that are read back in rather than created.
+   * 
+   * @param fileName name for this TextFile object.
+   * @param parent parent for this TextFile object.
+   * @param inode inode for this TextFile object.
+   * @param contents contents for this TextFile object, which are not copied,
+   *        or null if they are to be read in by loadContents() when they are
+   *        first used.
+   */
+  protected TextFile(String fileName, Directory parent, long inode,
+      TextBuffer contents) {
+    super(fileName, parent, inode);
+    if (contents != null) {
+      this.contents = contents;
+      this.contents.retain();
+      this.versions = new Version<Lines>(0, this.currentLines(), null);
+    }
+  }
+
+  /**
+   * Initializes new TextFile as a copy of original, with parent as its parent.
+   * The copy shares the contents of original until either one is changed.
+   * 
+   * @param original TextFile object to be copied.
+   * @param parent parent for the copy.
+   */
+  protected TextFile(TextFile original, Directory parent) {
+    super(original, parent);
+    this.shareContents(original);
+  }
+
+  /**
+   * Initializes new TextFile as a copy of original, with parent as its parent
+   * and the specified inode, which was set aside for it beforehand.
+   * 
+   * @param original TextFile object to be copied.
+   * @param parent parent for the copy.
+   * @param inode inode for the copy.
+   */
+  TextFile(TextFile original, Directory parent, long inode) {
+    super(original.getName(), parent, inode);
+    this.shareContents(original);
+  }
+
+  /**
+   * Starts out with the same contents as original, shared until either one
+   * is changed.
+   */
+  private void shareContents(TextFile original) {
+    synchronized (original) {
+      this.contents = original.buffer();
+      this.contents.retain();
+      this.lineStarts = original.lineStarts;
+      this.numStarts = original.numStarts;
+    }
+    this.versions = new Version<Lines>(0, this.currentLines(), null);
+  }
+
+  /**
+   * Returns a copy of this text file, placed in the same parent directory but
+   * not yet added to it. The contents are shared until either one is changed.
+   */
+  @Override
+  public TextFile copy() {
+    return new TextFile(this, (Directory) this.getParentFile());
   }
 
   /**
@@ -68,7 +157,108 @@ public class TextFile extends File {
    */
   @Override
   public String fileContents() {
-    return this.contents;
+    // The string is built on demand rather than kept alongside the bytes.
+    return this.snapshot().toString();
+  }
+
+  /**
+   * Returns the contents of this text file without copying them. The returned
+   * buffer reflects any later changes to this file, so it must only be used
+   * while this file cannot change, such as under the change lock.
+   * 
+   * @return contents of this TextFile object.
+   */
+  public synchronized TextBuffer getContents() {
+    return this.buffer();
+  }
+
+  /**
+   * Returns the contents of this text file as they are now, without copying
+   * them. Unlike getContents(), the returned text never changes, even if this
+   * file does, so it can be read without holding any lock.
+   * 
+   * @return current contents of this TextFile object.
+   */
+  public CharSequence snapshot() {
+    return this.snapshot(Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns the contents this text file had as of version of the file
+   * system, without copying them. If the file was created after that, its
+   * first contents are returned.
+   * 
+   * @param version version of the file system from a Snapshot.
+   * @return contents of this TextFile object back then.
+   */
+  CharSequence snapshot(long version) {
+    return this.lines(version).getText();
+  }
+
+  /**
+   * Returns the lines this text file had as of version of the file system,
+   * without copying them. If the file was created after that, its first
+   * lines are returned.
+   * 
+   * @param version version of the file system from a Snapshot.
+   * @return lines of this TextFile object back then.
+   */
+  Lines lines(long version) {
+    Version<Lines> text = this.versions;
+    if (text == null) {
+      synchronized (this) {
+        this.buffer(); // Reads the contents in.
+        text = this.versions;
+      }
+    }
+    return text.asOf(version);
+  }
+
+  /**
+   * Returns a view of the current contents of this text file that stays as it
+   * is, since text is only ever appended to a buffer past its current length.
+   * Requires the lock on this file.
+   */
+  private CharSequence currentText() {
+    TextBuffer current = this.buffer();
+    return current.subSequence(0, current.length());
+  }
+
+  /**
+   * Returns the current contents of this text file along with where their
+   * lines start, if they have been indexed. Requires the lock on this file.
+   */
+  private Lines currentLines() {
+    return new Lines(this.currentText(), this.lineStarts, this.numStarts);
+  }
+
+  /**
+   * Records the current contents of this file as those of the version of the
+   * file system being changed. Requires the change lock and the lock on this
+   * file.
+   */
+  private void addVersion() {
+    FileSystem disc = FileSystem.getInstance();
+    long version = disc.getChangeVersion();
+    Version<Lines> head = this.versions;
+    // Only the last of several changes within one version is kept.
+    Version<Lines> older = head;
+    if (head != null && head.getNumber() == version) {
+      older = head.getOlder();
+    }
+    this.versions = new Version<Lines>(version, this.currentLines(), older);
+    disc.versionAdded(this);
+    this.setStamp(disc.newStamp());
+  }
+
+  /**
+   * Drops the contents this file had as of versions of the file system older
+   * than oldest, other than the ones as of oldest itself.
+   */
+  @Override
+  boolean pruneVersions(long oldest) {
+    Version<Lines> text = this.versions;
+    return text != null && text.prune(oldest);
   }
 
   /**
@@ -77,7 +267,293 @@ public class TextFile extends File {
    * @param newContents new text for this TextFile object.
    */
   public void setContents(String newContents) {
-    this.contents = newContents;
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Journal journal = disc.getJournal();
+      if (journal != null) {
+        journal.recordWrite(this, newContents);
+      }
+      this.beforeChange();
+      TextBuffer newBuffer = new TextBuffer(newContents);
+      synchronized (this) {
+        // The old contents are held on to if the change may be undone.
+        TextBuffer previous = null;
+        long before = this.getStamp();
+        if (UndoHistory.isRecording()) {
+          previous = this.buffer();
+          previous.retain();
+        }
+        this.setBuffer(newBuffer, true);
+
+        // The lines of the new contents are indexed from scratch.
+        this.lineStarts = null;
+        this.ensureIndexed();
+        this.addVersion();
+        if (previous != null) {
+          UndoHistory.record(new Change.Written(this, previous, before,
+              this.getStamp()));
+        }
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Adds the specified text to the end of the contents of this text file.
+   * 
+   * @param text text to be appended to this TextFile object.
+   */
+  public void appendContents(String text) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Journal journal = disc.getJournal();
+      if (journal != null) {
+        journal.recordAppend(this, text);
+      }
+      this.beforeChange();
+      synchronized (this) {
+        // Taking a private copy of contents that are shared with other files,
+        // or whose cut off text may still be read from older versions.
+        TextBuffer current = this.buffer();
+        if (current.isShared() || current.isInterned()
+            || this.hasLongerVersion(current.length())) {
+          this.setBuffer(current.copy(), false);
+          if (this.lineStarts != null) {
+            this.lineStarts =
+                Arrays.copyOf(this.lineStarts, this.lineStarts.length);
+          }
+        }
+        int oldLength = this.buffer().length();
+        this.ensureIndexed();
+        this.buffer().append(text);
+
+        // Only the appended text needs to be indexed.
+        this.indexLines(oldLength);
+        long before = this.getStamp();
+        this.addVersion();
+        UndoHistory.record(new Change.Appended(this, oldLength, text, before,
+            this.getStamp()));
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Shares the contents of this text file with every other text file holding
+   * the same text, if the file system deduplicates contents. Used once text
+   * that was appended bit by bit is complete. The contents do not change.
+   */
+  public void deduplicateContents() {
+    FileSystem disc = FileSystem.getInstance();
+    if (!disc.getContentStore().isEnabled()) {
+      return;
+    }
+    disc.lockChanges();
+    try {
+      synchronized (this) {
+        TextBuffer current = this.buffer();
+        if (!current.isInterned()) {
+          this.setBuffer(current, true);
+        }
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Cuts the contents of this file down to their first length characters,
+   * without copying them unless they are shared with other files.
+   * 
+   * @param length number of characters to keep.
+   */
+  void truncate(int length) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Journal journal = disc.getJournal();
+      if (journal != null) {
+        journal.recordTruncate(this, length);
+      }
+      this.beforeChange();
+      synchronized (this) {
+        TextBuffer current = this.buffer();
+        if (current.isShared() || current.isInterned()) {
+          // Other files still hold all of it, so what is kept is copied.
+          this.setBuffer(new TextBuffer(current.subSequence(0, length)),
+              false);
+          this.lineStarts = null;
+          this.ensureIndexed();
+        } else {
+          current.truncate(length);
+          if (this.lineStarts != null) {
+            // Keeping the lines that start within what is left.
+            int index = Arrays.binarySearch(this.lineStarts, 0,
+                this.numStarts, length);
+            this.numStarts = (index >= 0) ? index + 1 : -index - 1;
+          }
+        }
+        this.addVersion();
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Replaces the contents of this file with other, taking over the hold on
+   * them, and returns the old contents along with the hold on those. Nothing
+   * is copied.
+   * 
+   * @param other contents this or some other text file held before.
+   * @return the contents this file held.
+   */
+  TextBuffer exchangeContents(TextBuffer other) {
+    FileSystem disc = FileSystem.getInstance();
+    disc.lockChanges();
+    try {
+      Journal journal = disc.getJournal();
+      if (journal != null) {
+        journal.recordWrite(this, other.toString());
+      }
+      this.beforeChange();
+      synchronized (this) {
+        TextBuffer current = this.buffer();
+        this.contents = other;
+        this.lineStarts = null;
+        this.ensureIndexed();
+        this.addVersion();
+        return current;
+      }
+    } finally {
+      disc.unlockChanges();
+    }
+  }
+
+  /**
+   * Returns whether or not a version of this file that may still be read is
+   * longer than length.
+   */
+  private boolean hasLongerVersion(int length) {
+    for (Version<Lines> v = this.versions; v != null; v = v.getOlder()) {
+      if (v.getValue().getText().length() > length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Indexes the lines of this file if that has not been done yet.
+   */
+  private void ensureIndexed() {
+    if (this.lineStarts == null) {
+      this.lineStarts = new int[] {0};
+      this.numStarts = 1;
+      this.indexLines(0);
+    }
+  }
+
+  /**
+   * Replaces the buffer holding the contents of this file with newContents,
+   * which are deduplicated if deduplicate is true and the file system does so.
+   */
+  private void setBuffer(TextBuffer newContents, boolean deduplicate) {
+    ContentStore store = FileSystem.getInstance().getContentStore();
+    if (this.contents != null) {
+      store.release(this.contents);
+    }
+    this.contents = deduplicate ? store.intern(newContents) : newContents;
+    this.contents.retain();
+  }
+
+  /**
+   * Returns the contents of this file, reading them in first if that has not
+   * happened yet. Requires the lock on this file.
+   */
+  private TextBuffer buffer() {
+    if (this.contents == null) {
+      this.contents = this.loadContents();
+      this.contents.retain();
+      // Contents read in were always there, as far as snapshots are
+      // concerned.
+      this.versions = new Version<Lines>(0, this.currentLines(), null);
+    }
+    return this.contents;
+  }
+
+  /**
+   * Reads in the contents of this text file. Called once, when the contents
+   * are first used.
+   * 
+   * Requires a subclass whose contents are read in lazily.
+   * 
+   * @return contents of this TextFile object.
+   */
+  protected TextBuffer loadContents() {
+    return new TextBuffer("");
+  }
+
+  /**
+   * Makes sure that copies of the directories above this file do not observe
+   * the change that is about to be made to it.
+   */
+  private void beforeChange() {
+    if (this.getParentFile() instanceof Directory) {
+      Directory.beforeChange((Directory) this.getParentFile(), this);
+    }
+  }
+
+  /**
+   * Records the start of every line that begins after offset from.
+   */
+  private void indexLines(int from) {
+    TextBuffer text = this.buffer();
+    for (int i = from; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        // Making room for more lines if needed.
+        if (this.numStarts == this.lineStarts.length) {
+          this.lineStarts = Arrays.copyOf(this.lineStarts, this.numStarts * 2);
+        }
+        this.lineStarts[this.numStarts++] = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of lines in this text file. A newline at the very end
+   * of the contents does not start another line.
+   * 
+   * @return number of lines in this TextFile object.
+   */
+  public synchronized int numLines() {
+    return this.lines(Long.MAX_VALUE).numLines();
+  }
+
+  /**
+   * Returns the index of the line that contains the character at offset.
+   * 
+   * @param offset offset of some character in this TextFile object.
+   * @return index of the line containing offset, starting from 0.
+   */
+  public synchronized int lineAt(int offset) {
+    return this.lines(Long.MAX_VALUE).lineAt(offset);
+  }
+
+  /**
+   * Returns the line with the specified index, without its newline. The
+   * returned view does not copy the contents of this file, and keeps showing
+   * the line as it is now even if this file changes.
+   * 
+   * @param index index of some line, starting from 0.
+   * @return line at index in this TextFile object.
+   */
+  public synchronized CharSequence getLine(int index) {
+    return this.lines(Long.MAX_VALUE).getLine(index);
   }
 
   /**
@@ -85,9 +561,8 @@ public class TextFile extends File {
    * 
    * @return true if this TextFile object has empty contents, otherwise false.
    */
-  public boolean isEmpty() {
-    String fileContents = this.contents.trim(); // Removing all whitespace.
-    return fileContents.equals("");
+  public synchronized boolean isEmpty() {
+    return this.buffer().isBlank();
   }
 
 }
@@ -0,0 +1,254 @@
+package sys_files;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Represents the changes a session has made to the file system, one step per
+ * command, so that they can be undone and made again. Each step only keeps
+ * what its command changed (the file a directory gained or lost, the contents
+ * a text file held before being overwritten, how long it was before being
+ * appended to), so undoing or redoing it takes time in proportion to the
+ * change rather than to the files involved.
+ *
+ * A step can only be undone while everything it changed is still as the step
+ * left it, and only be redone while everything is as it was before the step.
+ * Steps are dropped once the whole file system is replaced.
+ */
+public class UndoHistory {
+
+  public final static int MAX_STEPS = 1000; // Most steps kept.
+
+  // Step changes made by each thread are recorded in, if any. Threads
+  // started by a thread (such as the commands of a pipeline) record in the
+  // same step.
+  private final static InheritableThreadLocal<Step> recording =
+      new InheritableThreadLocal<Step>();
+
+  private final ArrayDeque<Step> done = new ArrayDeque<Step>(); // Undoable.
+  private final ArrayDeque<Step> undone = new ArrayDeque<Step>(); // Redoable.
+
+  /**
+   * Starts recording the changes made by the calling thread, and by threads
+   * it starts from now on, as a new step. Once the step is closed, recording
+   * goes back to the step that was being recorded before, and the new step
+   * is added to this history unless nothing was changed.
+   *
+   * @return the new Step.
+   */
+  public Step startStep() {
+    Step step = new Step(this, recording.get());
+    recording.set(step);
+    return step;
+  }
+
+  /**
+   * Returns whether or not changes made by the calling thread are being
+   * recorded.
+   */
+  static boolean isRecording() {
+    return recording.get() != null;
+  }
+
+  /**
+   * Records change in the step being recorded by the calling thread, if any.
+   * Requires the change lock.
+   */
+  static void record(Change change) {
+    Step step = recording.get();
+    if (step != null) {
+      step.add(change);
+    }
+  }
+
+  /**
+   * Undoes up to steps steps, most recent first, stopping early at a step
+   * that can no longer be undone.
+   *
+   * @param steps number of steps to undo.
+   * @return number of steps undone.
+   */
+  public int undo(int steps) {
+    return this.move(this.done, this.undone, steps, true);
+  }
+
+  /**
+   * Makes up to steps undone steps again, most recently undone first,
+   * stopping early at a step that can no longer be redone.
+   *
+   * @param steps number of steps to redo.
+   * @return number of steps redone.
+   */
+  public int redo(int steps) {
+    return this.move(this.undone, this.done, steps, false);
+  }
+
+  /**
+   * Undoes (if undo is true) or redoes up to steps steps from the end of
+   * from, moving each to the end of to.
+   */
+  private int move(ArrayDeque<Step> from, ArrayDeque<Step> to, int steps,
+      boolean undo) {
+    FileSystem disc = FileSystem.getInstance();
+    Step outer = recording.get();
+    recording.set(null); // Undoing and redoing are not steps themselves.
+    disc.lockChanges();
+    try {
+      synchronized (this) {
+        int moved = 0;
+        while (moved < steps && !from.isEmpty()) {
+          Step step = from.getLast();
+          if (!(undo ? step.undo() : step.redo())) {
+            break;
+          }
+          to.addLast(from.removeLast());
+          moved++;
+        }
+        return moved;
+      }
+    } finally {
+      disc.unlockChanges();
+      recording.set(outer);
+    }
+  }
+
+  /**
+   * Returns the number of steps that may be undone.
+   *
+   * @return number of steps in this UndoHistory that have not been undone.
+   */
+  public synchronized int numUndoable() {
+    return this.done.size();
+  }
+
+  /**
+   * Returns the number of steps that may be redone.
+   *
+   * @return number of steps in this UndoHistory that have been undone.
+   */
+  public synchronized int numRedoable() {
+    return this.undone.size();
+  }
+
+  /**
+   * Adds step to the steps that may be undone. Steps that were undone can no
+   * longer be redone after that.
+   */
+  private synchronized void add(Step step) {
+    this.done.addLast(step);
+    if (this.done.size() > MAX_STEPS) {
+      this.done.removeFirst().discard();
+    }
+    UndoHistory.discardAll(this.undone);
+  }
+
+  /**
+   * Drops every step, for when the whole file system is replaced.
+   */
+  synchronized void clear() {
+    UndoHistory.discardAll(this.done);
+    UndoHistory.discardAll(this.undone);
+  }
+
+  /**
+   * Discards and removes every step in steps.
+   */
+  private static void discardAll(ArrayDeque<Step> steps) {
+    for (Step step : steps) {
+      step.discard();
+    }
+    steps.clear();
+  }
+
+  /**
+   * The changes made by one command, in the order they were made.
+   */
+  public static class Step implements AutoCloseable {
+
+    private final UndoHistory history; // History this step goes into.
+    private final Step outer; // Step recorded before this one, or null.
+    private final ArrayList<Change> changes = new ArrayList<Change>();
+    private boolean closed = false; // Whether this step has been closed.
+
+    /**
+     * Initializes new Step of history, started while outer was recorded.
+     */
+    private Step(UndoHistory history, Step outer) {
+      this.history = history;
+      this.outer = outer;
+    }
+
+    /**
+     * Adds change to the end of this step.
+     */
+    private synchronized void add(Change change) {
+      this.changes.add(change);
+    }
+
+    /**
+     * Undoes every change, last one first. If one of them cannot be undone,
+     * the ones already undone are made again and false is returned.
+     */
+    private synchronized boolean undo() {
+      for (int i = this.changes.size() - 1; i >= 0; i--) {
+        if (!this.changes.get(i).canUndo()) {
+          for (int j = i + 1; j < this.changes.size(); j++) {
+            this.changes.get(j).redo();
+          }
+          return false;
+        }
+        this.changes.get(i).undo();
+      }
+      return true;
+    }
+
+    /**
+     * Makes every change again, first one first. If one of them cannot be
+     * made, the ones already made are undone and false is returned.
+     */
+    private synchronized boolean redo() {
+      for (int i = 0; i < this.changes.size(); i++) {
+        if (!this.changes.get(i).canRedo()) {
+          for (int j = i - 1; j >= 0; j--) {
+            this.changes.get(j).undo();
+          }
+          return false;
+        }
+        this.changes.get(i).redo();
+      }
+      return true;
+    }
+
+    /**
+     * Lets go of anything held on to for the changes in this step.
+     */
+    private synchronized void discard() {
+      for (Change change : this.changes) {
+        change.discard();
+      }
+    }
+
+    /**
+     * Stops recording this step, adding it to its history if anything was
+     * changed. Closing it again has no effect.
+     */
+    @Override
+    public void close() {
+      synchronized (this) {
+        if (this.closed) {
+          return;
+        }
+        this.closed = true;
+      }
+      recording.set(this.outer);
+      boolean changed;
+      synchronized (this) {
+        changed = !this.changes.isEmpty();
+      }
+      if (changed) {
+        this.history.add(this);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+package sys_files;
+
+/**
+ * Represents what a file held as of some version of the file system, linked
+ * to what it held before that. Each change to a file puts a new version in
+ * front of the ones it had, so readers that took a snapshot earlier can still
+ * find what the file held back then. The value of a version never changes.
+ *
+ * @param <T> type of what a file holds.
+ */
+class Version<T> {
+
+  private final long number; // Version of the file system this is from.
+  private final T value; // What the file held as of this version.
+  // What the file held before this version, if it may still be needed.
+  private volatile Version<T> older;
+
+  /**
+   * Initializes new Version with the specified number and value, in front of
+   * older.
+   *
+   * @param number version of the file system value is from.
+   * @param value what a file held as of number.
+   * @param older the version before this one, or null.
+   */
+  Version(long number, T value, Version<T> older) {
+    this.number = number;
+    this.value = value;
+    this.older = older;
+  }
+
+  /**
+   * Returns the version of the file system this is from.
+   */
+  long getNumber() {
+    return this.number;
+  }
+
+  /**
+   * Returns what the file held as of this version.
+   */
+  T getValue() {
+    return this.value;
+  }
+
+  /**
+   * Returns the version before this one, or null if there is none left.
+   */
+  Version<T> getOlder() {
+    return this.older;
+  }
+
+  /**
+   * Returns what the file held as of version snapshot of the file system.
+   * If every version left is newer than snapshot, the file did not exist
+   * back then, and the oldest one is used.
+   *
+   * @param snapshot some version of the file system.
+   * @return value of the newest version no newer than snapshot.
+   */
+  T asOf(long snapshot) {
+    Version<T> version = this;
+    Version<T> older;
+    while (version.number > snapshot && (older = version.older) != null) {
+      version = older;
+    }
+    return version.value;
+  }
+
+  /**
+   * Drops every version that no reader can still need, which are those older
+   * than the newest version no newer than oldest.
+   *
+   * @param oldest oldest version of the file system that is still being read.
+   * @return true if there is more than one version left, otherwise false.
+   */
+  boolean prune(long oldest) {
+    Version<T> version = this;
+    while (version.number > oldest && version.older != null) {
+      version = version.older;
+    }
+    version.older = null;
+    return version != this;
+  }
+
+}